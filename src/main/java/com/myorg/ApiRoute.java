@@ -0,0 +1,99 @@
+package com.myorg;
+
+import software.amazon.awscdk.services.apigateway.JsonSchema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One public API route and the backend path it is proxied to, e.g. GET /products/{id} -> /api/products/{id}.
+ * Path parameters are written as {name} in both paths. Only GET routes can be cached. A write route with a
+ * request schema has its JSON body validated by API Gateway before it is proxied to the backend.
+ */
+record ApiRoute(
+        String path,
+        String method,
+        String backendPath,
+        boolean cached,
+        JsonSchema requestSchema
+) {
+    private static final Pattern PATH_PARAMETER = Pattern.compile("\\{(\\w+)}");
+    private static final List<String> METHODS = List.of("GET", "POST", "PUT", "PATCH", "DELETE");
+
+    ApiRoute {
+        if (!path.startsWith("/") || !backendPath.startsWith("/")) {
+            throw new IllegalArgumentException("Route paths must start with '/', got " + path + " -> " + backendPath);
+        }
+        if (!METHODS.contains(method)) {
+            throw new IllegalArgumentException("Route method must be one of " + METHODS + ", got " + method);
+        }
+        if (cached && !method.equals("GET")) {
+            throw new IllegalArgumentException("Only GET routes can be cached, got " + method + " " + path);
+        }
+        if (requestSchema != null && (readOnly() || method.equals("DELETE"))) {
+            throw new IllegalArgumentException("Only POST, PUT and PATCH routes have a request body, got " + method + " " + path);
+        }
+        if (requestSchema != null && requestSchema.getTitle() == null) {
+            throw new IllegalArgumentException("Request schema of " + method + " " + path + " needs a title to name its model");
+        }
+    }
+
+    static ApiRoute get(String path, String backendPath) {
+        return new ApiRoute(path, "GET", backendPath, true, null);
+    }
+
+    static ApiRoute write(String method, String path, String backendPath) {
+        return new ApiRoute(path, method, backendPath, false, null);
+    }
+
+    static ApiRoute write(String method, String path, String backendPath, JsonSchema requestSchema) {
+        return new ApiRoute(path, method, backendPath, false, requestSchema);
+    }
+
+    boolean readOnly() {
+        return method.equals("GET");
+    }
+
+    List<String> pathParameters() {
+        List<String> parameters = new ArrayList<>();
+        Matcher matcher = PATH_PARAMETER.matcher(path);
+        while (matcher.find()) {
+            parameters.add(matcher.group(1));
+        }
+        return parameters;
+    }
+
+    /**
+     * Key of the stage method settings, e.g. "/products/{id}/GET".
+     */
+    String methodKey() {
+        return path + "/" + method;
+    }
+
+    /**
+     * Path with every parameter replaced by a wildcard, as used by execute-api ARNs and ALB path patterns.
+     */
+    String wildcardPath() {
+        return PATH_PARAMETER.matcher(path).replaceAll("*");
+    }
+
+    String backendPathPattern() {
+        return PATH_PARAMETER.matcher(backendPath).replaceAll("*");
+    }
+
+    /**
+     * Backend path with the parameters mapped from the HTTP API request, e.g. /api/products/$request.path.id.
+     */
+    String httpApiBackendPath() {
+        return PATH_PARAMETER.matcher(backendPath).replaceAll("\\$request.path.$1");
+    }
+
+    /**
+     * Cache namespace shared by all methods of a path, e.g. "products-id" for /products/{id}.
+     */
+    String cacheNamespace() {
+        return path.replaceAll("[{}]", "").substring(1).replace('/', '-');
+    }
+}
@@ -1,166 +1,446 @@
 package com.myorg;
 
+import software.amazon.awscdk.CfnOutput;
+import software.amazon.awscdk.CfnOutputProps;
+import software.amazon.awscdk.Duration;
 import software.amazon.awscdk.RemovalPolicy;
+import software.amazon.awscdk.Size;
 import software.amazon.awscdk.Stack;
 import software.amazon.awscdk.StackProps;
 import software.amazon.awscdk.services.apigateway.*;
-import software.amazon.awscdk.services.apigatewayv2.VpcLink;
+import software.amazon.awscdk.services.certificatemanager.Certificate;
+import software.amazon.awscdk.services.certificatemanager.CertificateProps;
+import software.amazon.awscdk.services.certificatemanager.CertificateValidation;
 import software.amazon.awscdk.services.elasticloadbalancingv2.NetworkLoadBalancer;
+import software.amazon.awscdk.services.iam.ManagedPolicy;
+import software.amazon.awscdk.services.iam.ManagedPolicyProps;
+import software.amazon.awscdk.services.iam.PolicyStatement;
 import software.amazon.awscdk.services.logs.LogGroup;
 import software.amazon.awscdk.services.logs.LogGroupProps;
 import software.amazon.awscdk.services.logs.RetentionDays;
+import software.amazon.awscdk.services.route53.ARecord;
+import software.amazon.awscdk.services.route53.ARecordProps;
+import software.amazon.awscdk.services.route53.HostedZone;
+import software.amazon.awscdk.services.route53.HostedZoneAttributes;
+import software.amazon.awscdk.services.route53.IHostedZone;
+import software.amazon.awscdk.services.route53.RecordTarget;
+import software.amazon.awscdk.services.route53.targets.ApiGatewayDomain;
 import software.constructs.Construct;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ApiStack extends Stack {
+    private final RestApi restApi;
+
     public ApiStack(final Construct scope, final String id,
                                 final StackProps props, ApiStackProps apiStackProps) {
         super(scope, id, props);
 
-        LogGroup logGroup = new LogGroup(this, "ECommerceApiLogs", LogGroupProps.builder()
-                .logGroupName("ECommerceAPI")
-                .removalPolicy(RemovalPolicy.DESTROY)
-                .retention(RetentionDays.ONE_MONTH)
-                .build());
+        ApiCacheSettings cacheSettings = apiStackProps.cacheSettings();
+        ApiThrottleSettings throttleSettings = apiStackProps.throttleSettings();
+        ApiDomainSettings domainSettings = apiStackProps.domainSettings();
+        ApiLoggingSettings loggingSettings = apiStackProps.loggingSettings();
 
-        RestApi restApi = new RestApi(this, "RestApi",
+        StageOptions.Builder stageOptions = StageOptions.builder()
+                .cacheClusterEnabled(cacheSettings.enabled())
+                .cacheClusterSize(cacheSettings.enabled() ? cacheSettings.clusterSize() : null)
+                // Caching is off for every method unless overridden below, so writes are never cached
+                .cachingEnabled(false)
+                .throttlingRateLimit(throttleSettings.rateLimit())
+                .throttlingBurstLimit(throttleSettings.burstLimit())
+                .methodOptions(this.createMethodOptions(apiStackProps.routes(), cacheSettings, throttleSettings))
+                .loggingLevel(loggingSettings.level())
+                .dataTraceEnabled(loggingSettings.dataTrace())
+                // The stage starts the trace, so gateway and VPC link time show up in front of the service segment
+                .tracingEnabled(apiStackProps.tracingSettings().apiTracing());
+        if (loggingSettings.accessLogs()) {
+            LogGroup logGroup = new LogGroup(this, "ECommerceApiLogs", LogGroupProps.builder()
+                    .logGroupName("ECommerceAPI")
+                    .removalPolicy(RemovalPolicy.DESTROY)
+                    .retention(loggingSettings.retention())
+                    .build());
+            stageOptions
+                    .accessLogDestination(new LogGroupLogDestination(logGroup))
+                    .accessLogFormat(
+                            AccessLogFormat.jsonWithStandardFields(
+                                    JsonWithStandardFieldProps.builder()
+                                            .caller(true)
+                                            .httpMethod(true)
+                                            .ip(true)
+                                            .protocol(true)
+                                            .requestTime(true)
+                                            .resourcePath(true)
+                                            .responseLength(true)
+                                            .status(true)
+                                            .user(true)
+                                            .build()
+                            )
+                    );
+        }
+
+        this.restApi = new RestApi(this, "RestApi",
                 RestApiProps.builder()
                         .restApiName("ECommerceAPI")
                         .cloudWatchRole(true)
-                        .deployOptions(StageOptions.builder()
-                                .loggingLevel(MethodLoggingLevel.INFO)
-                                .accessLogDestination(new LogGroupLogDestination(logGroup))
-                                .accessLogFormat(
-                                        AccessLogFormat.jsonWithStandardFields(
-                                                JsonWithStandardFieldProps.builder()
-                                                        .caller(true)
-                                                        .httpMethod(true)
-                                                        .ip(true)
-                                                        .protocol(true)
-                                                        .requestTime(true)
-                                                        .resourcePath(true)
-                                                        .responseLength(true)
-                                                        .status(true)
-                                                        .user(true)
-                                                        .build()
-                                        )
-                                )
-                                .build())
+                        // Latency-based routing needs a regional endpoint per region instead of CloudFront
+                        .endpointTypes(Collections.singletonList(
+                                domainSettings.enabled() ? EndpointType.REGIONAL : EndpointType.EDGE))
+                        .deployOptions(stageOptions.build())
+                        .minCompressionSize(apiStackProps.compressionSettings().enabled()
+                                ? Size.bytes(apiStackProps.compressionSettings().minSizeBytes())
+                                : null)
                         .build()
                 );
 
-        this.createProductsResource(restApi, apiStackProps);
+        this.createRoutes(restApi, apiStackProps);
+        this.createUsagePlans(restApi, throttleSettings);
+        if (domainSettings.enabled()) {
+            this.createLatencyRoutedDomain(restApi, domainSettings);
+        }
 
+        if (cacheSettings.enabled()) {
+            // Attach this policy to principals that may send "Cache-Control: max-age=0" to refresh an entry
+            new ManagedPolicy(this, "ProductsCacheInvalidationPolicy", ManagedPolicyProps.builder()
+                    .managedPolicyName(apiStackProps.placement().globalName("ECommerceApiProductsCacheInvalidation"))
+                    .statements(Collections.singletonList(PolicyStatement.Builder.create()
+                            .actions(Collections.singletonList("execute-api:InvalidateCache"))
+                            .resources(apiStackProps.routes().stream()
+                                    .filter(ApiRoute::cached)
+                                    .map(route -> restApi.arnForExecuteApi(route.method(), route.wildcardPath(),
+                                            restApi.getDeploymentStage().getStageName()))
+                                    .toList())
+                            .build()))
+                    .build());
+        }
     }
 
-    private void createProductsResource(RestApi restApi, ApiStackProps apiStackProps){
-        Map<String, String> productsIntegrationParameters = new HashMap<>();
-        productsIntegrationParameters.put("integration.request.header.requestId", "context.requestId");
+    public RestApi getRestApi() {
+        return restApi;
+    }
 
-        Map<String, Boolean> productsMethodParameters = new HashMap<>();
-        productsMethodParameters.put("method.request.header.requestId", false);
+    private Map<String, MethodDeploymentOptions> createMethodOptions(List<ApiRoute> routes,
+                                                                     ApiCacheSettings cacheSettings,
+                                                                     ApiThrottleSettings throttleSettings) {
+        Map<String, MethodDeploymentOptions> methodOptions = new HashMap<>();
+        for (ApiRoute route : routes) {
+            MethodDeploymentOptions.Builder options = MethodDeploymentOptions.builder();
+            if (route.readOnly()) {
+                options
+                        .throttlingRateLimit(throttleSettings.readRateLimit())
+                        .throttlingBurstLimit(throttleSettings.readBurstLimit());
+            } else {
+                options
+                        .throttlingRateLimit(throttleSettings.writeRateLimit())
+                        .throttlingBurstLimit(throttleSettings.writeBurstLimit());
+            }
+            if (route.cached() && cacheSettings.enabled()) {
+                options
+                        .cachingEnabled(true)
+                        .cacheTtl(Duration.seconds(cacheSettings.ttlSeconds()))
+                        .cacheDataEncrypted(true);
+            }
+            methodOptions.put(route.methodKey(), options.build());
+        }
+        return methodOptions;
+    }
 
-        // /products
-        Resource productsResource = restApi.getRoot().addResource("products");
+    /**
+     * Maps the shared custom domain to this regional API and adds a latency record for this region, so Route 53
+     * answers every client with the region closest to it.
+     */
+    private void createLatencyRoutedDomain(RestApi restApi, ApiDomainSettings domainSettings) {
+        IHostedZone hostedZone = HostedZone.fromHostedZoneAttributes(this, "HostedZone",
+                HostedZoneAttributes.builder()
+                        .hostedZoneId(domainSettings.hostedZoneId())
+                        .zoneName(domainSettings.hostedZoneName())
+                        .build());
 
-        // GET /products
-        productsResource.addMethod("GET", new Integration(
-                IntegrationProps.builder()
-                        .type(IntegrationType.HTTP_PROXY)
-                        .integrationHttpMethod("GET")
-                        .uri("http://" + apiStackProps.networkLoadBalancer().getLoadBalancerDnsName() +
-                                ":8080/api/products")
-                        .options(IntegrationOptions.builder()
-                                .vpcLink(apiStackProps.vpcLink())
-                                .connectionType(ConnectionType.VPC_LINK)
-                                .requestParameters(productsIntegrationParameters)
-                                .build())
-                        .build()),
-                MethodOptions.builder()
-                        .requestParameters(productsMethodParameters)
-                        .build()
-                );
-
-        // POST /products
-        productsResource.addMethod("POST", new Integration(
-                IntegrationProps.builder()
-                        .type(IntegrationType.HTTP_PROXY)
-                        .integrationHttpMethod("POST")
-                        .uri("http://" + apiStackProps.networkLoadBalancer().getLoadBalancerDnsName() +
-                                ":8080/api/products")
-                        .options(IntegrationOptions.builder()
-                                .vpcLink(apiStackProps.vpcLink())
-                                .connectionType(ConnectionType.VPC_LINK)
-                                .requestParameters(productsIntegrationParameters)
-                                .build())
-                        .build()),
-                MethodOptions.builder()
-                        .requestParameters(productsMethodParameters)
-                        .build()
-                );
+        Certificate certificate = new Certificate(this, "ApiCertificate", CertificateProps.builder()
+                .domainName(domainSettings.domainName())
+                .validation(CertificateValidation.fromDns(hostedZone))
+                .build());
 
-        // PUT /products/{id}
-        Map<String, String> productIdIntegrationParameters = new HashMap<>();
-        productIdIntegrationParameters.put("integration.request.path.id", "method.request.path.id");
-        productIdIntegrationParameters.put("integration.request.header.requestId", "context.requestId");
-
-        Map<String, Boolean> productIdMethodParameters = new HashMap<>();
-        productIdMethodParameters.put("method.request.path.id", true);
-        productIdMethodParameters.put("method.request.header.requestId", false);
-
-        Resource productIdResource = productsResource.addResource("{id}");
-        productIdResource.addMethod("PUT", new Integration(
-                IntegrationProps.builder()
-                        .type(IntegrationType.HTTP_PROXY)
-                        .integrationHttpMethod("PUT")
-                        .uri("http://" + apiStackProps.networkLoadBalancer().getLoadBalancerDnsName() +
-                                ":8080/api/products/{id}")
-                        .options(IntegrationOptions.builder()
-                                .vpcLink(apiStackProps.vpcLink())
-                                .connectionType(ConnectionType.VPC_LINK)
-                                .requestParameters(productIdIntegrationParameters)
-                                .build())
-                        .build()), MethodOptions.builder()
-                        .requestParameters(productIdMethodParameters)
+        DomainName domainName = restApi.addDomainName("ApiDomainName", DomainNameOptions.builder()
+                .domainName(domainSettings.domainName())
+                .certificate(certificate)
+                .endpointType(EndpointType.REGIONAL)
+                .securityPolicy(SecurityPolicy.TLS_1_2)
                 .build());
 
-        // GET /products/{id}
-        productIdResource.addMethod("GET", new Integration(
-                IntegrationProps.builder()
-                        .type(IntegrationType.HTTP_PROXY)
-                        .integrationHttpMethod("GET")
-                        .uri("http://" + apiStackProps.networkLoadBalancer().getLoadBalancerDnsName() +
-                                ":8080/api/products/{id}")
-                        .options(IntegrationOptions.builder()
-                                .vpcLink(apiStackProps.vpcLink())
-                                .connectionType(ConnectionType.VPC_LINK)
-                                .requestParameters(productIdIntegrationParameters)
-                                .build())
-                        .build()), MethodOptions.builder()
-                .requestParameters(productIdMethodParameters)
+        new ARecord(this, "ApiLatencyRecord", ARecordProps.builder()
+                .zone(hostedZone)
+                .recordName(domainSettings.domainName())
+                .region(this.getRegion())
+                .setIdentifier("ECommerceAPI-" + this.getRegion())
+                .target(RecordTarget.fromAlias(new ApiGatewayDomain(domainName)))
                 .build());
+    }
+
+    private void createUsagePlans(RestApi restApi, ApiThrottleSettings throttleSettings) {
+        for (ApiThrottleSettings.PartnerUsagePlan partner : throttleSettings.partnerUsagePlans()) {
+            UsagePlan usagePlan = restApi.addUsagePlan(partner.name() + "UsagePlan", UsagePlanProps.builder()
+                    .name(partner.name())
+                    .throttle(ThrottleSettings.builder()
+                            .rateLimit(partner.rateLimit())
+                            .burstLimit(partner.burstLimit())
+                            .build())
+                    .quota(QuotaSettings.builder()
+                            .limit(partner.quotaLimit())
+                            .period(partner.quotaPeriod())
+                            .build())
+                    .build());
+            usagePlan.addApiStage(UsagePlanPerApiStage.builder()
+                    .api(restApi)
+                    .stage(restApi.getDeploymentStage())
+                    .build());
 
-        // DELETE /products/{id}
-        productIdResource.addMethod("DELETE", new Integration(
-                IntegrationProps.builder()
-                        .type(IntegrationType.HTTP_PROXY)
-                        .integrationHttpMethod("DELETE")
-                        .uri("http://" + apiStackProps.networkLoadBalancer().getLoadBalancerDnsName() +
-                                ":8080/api/products/{id}")
-                        .options(IntegrationOptions.builder()
-                                .vpcLink(apiStackProps.vpcLink())
-                                .connectionType(ConnectionType.VPC_LINK)
-                                .requestParameters(productIdIntegrationParameters)
-                                .build())
-                        .build()), MethodOptions.builder()
-                .requestParameters(productIdMethodParameters)
+            IApiKey apiKey = restApi.addApiKey(partner.name() + "ApiKey", ApiKeyOptions.builder()
+                    .apiKeyName(partner.name())
+                    .build());
+            usagePlan.addApiKey(apiKey);
+
+            // Partners get the key value with: aws apigateway get-api-key --include-value --api-key <id>
+            new CfnOutput(this, partner.name() + "ApiKeyId", CfnOutputProps.builder()
+                    .value(apiKey.getKeyId())
+                    .build());
+        }
+    }
+
+    private void createRoutes(RestApi restApi, ApiStackProps apiStackProps) {
+        ApiCacheSettings cacheSettings = apiStackProps.cacheSettings();
+        // Malformed bodies and missing path parameters are answered with a 400 by API Gateway itself
+        RequestValidator requestValidator = restApi.addRequestValidator("RequestValidator", RequestValidatorOptions.builder()
+                .requestValidatorName("ECommerceRequestValidator")
+                .validateRequestBody(true)
+                .validateRequestParameters(true)
                 .build());
+        Map<String, Model> models = new HashMap<>();
+
+        for (ApiRoute route : apiStackProps.routes()) {
+            Map<String, String> integrationParameters = new HashMap<>();
+            integrationParameters.put("integration.request.header.requestId", "context.requestId");
+
+            Map<String, Boolean> methodParameters = new HashMap<>();
+            methodParameters.put("method.request.header.requestId", false);
+
+            List<String> cacheKeyParameters = new ArrayList<>();
+            for (String pathParameter : route.pathParameters()) {
+                integrationParameters.put("integration.request.path." + pathParameter, "method.request.path." + pathParameter);
+                methodParameters.put("method.request.path." + pathParameter, true);
+                cacheKeyParameters.add("method.request.path." + pathParameter);
+            }
+
+            IntegrationOptions.Builder integrationOptions = IntegrationOptions.builder()
+                    .vpcLink(apiStackProps.vpcLink())
+                    .connectionType(ConnectionType.VPC_LINK)
+                    .requestParameters(integrationParameters);
+            if (route.cached()) {
+                for (String queryString : cacheSettings.cacheKeyQueryStrings()) {
+                    methodParameters.put("method.request.querystring." + queryString, false);
+                    cacheKeyParameters.add("method.request.querystring." + queryString);
+                }
+                integrationOptions
+                        .cacheKeyParameters(cacheKeyParameters)
+                        .cacheNamespace(route.cacheNamespace());
+            }
+
+            MethodOptions.Builder methodOptions = MethodOptions.builder()
+                    .apiKeyRequired(apiStackProps.throttleSettings().apiKeyRequired())
+                    .requestParameters(methodParameters);
+            if (route.requestSchema() != null) {
+                Model model = models.computeIfAbsent(route.requestSchema().getTitle(),
+                        title -> restApi.addModel(title + "Model", ModelOptions.builder()
+                                .modelName(title)
+                                .contentType("application/json")
+                                .schema(route.requestSchema())
+                                .build()));
+                methodOptions
+                        .requestModels(Map.of("application/json", model))
+                        .requestValidator(requestValidator);
+            }
+
+            restApi.getRoot().resourceForPath(route.path()).addMethod(route.method(), new Integration(
+                    IntegrationProps.builder()
+                            .type(IntegrationType.HTTP_PROXY)
+                            .integrationHttpMethod(route.method())
+                            .uri("http://" + apiStackProps.networkLoadBalancer().getLoadBalancerDnsName() +
+                                    ":" + NlbStack.LISTENER_PORT + route.backendPath())
+                            .options(integrationOptions.build())
+                            .build()),
+                    methodOptions.build());
+        }
     }
 }
 
 record ApiStackProps(
         NetworkLoadBalancer networkLoadBalancer,
-        IVpcLink vpcLink
+        IVpcLink vpcLink,
+        ApiCacheSettings cacheSettings,
+        ApiThrottleSettings throttleSettings,
+        ApiDomainSettings domainSettings,
+        List<ApiRoute> routes,
+        ApiLoggingSettings loggingSettings,
+        TracingSettings tracingSettings,
+        ApiCompressionSettings compressionSettings,
+        RegionPlacement placement
 ){}
+
+/**
+ * Response compression of the ECommerceAPI: responses of at least minSizeBytes are gzip or deflate compressed
+ * for clients that send Accept-Encoding. Small bodies are sent as they are, where compressing costs more
+ * latency than it saves.
+ */
+record ApiCompressionSettings(
+        boolean enabled,
+        int minSizeBytes
+) {
+    ApiCompressionSettings {
+        if (minSizeBytes < 0 || minSizeBytes > 10485760) {
+            throw new IllegalArgumentException("API compression threshold must be between 0 and 10485760 bytes, got " + minSizeBytes);
+        }
+    }
+
+    static ApiCompressionSettings fromContext(ContextConfig config) {
+        return new ApiCompressionSettings(
+                config.getBoolean("api.compression.enabled", true),
+                config.getInt("api.compression.minSizeBytes", 1024));
+    }
+}
+
+/**
+ * Stage logging of the ECommerceAPI. Execution logs are written at the given level (INFO, ERROR or OFF);
+ * data trace logs full request and response bodies and is meant for debugging only. Access logs cannot be
+ * sampled by API Gateway, so they are either written for every request or switched off.
+ */
+record ApiLoggingSettings(
+        MethodLoggingLevel level,
+        boolean dataTrace,
+        boolean accessLogs,
+        RetentionDays retention
+) {
+    static ApiLoggingSettings fromContext(ContextConfig config) {
+        return new ApiLoggingSettings(
+                config.getEnum("api.logging.level", MethodLoggingLevel.class, MethodLoggingLevel.INFO),
+                config.getBoolean("api.logging.dataTrace", false),
+                config.getBoolean("api.logging.accessLogs", true),
+                config.getEnum("api.logging.retention", RetentionDays.class, RetentionDays.ONE_MONTH));
+    }
+}
+
+/**
+ * Custom domain shared by the regional APIs of a multi-region deployment. Every region gets its own
+ * certificate and a latency record in the hosted zone. Disabled when no domain name is configured.
+ */
+record ApiDomainSettings(
+        String domainName,
+        String hostedZoneId,
+        String hostedZoneName
+) {
+    ApiDomainSettings {
+        if (!domainName.isBlank() && (hostedZoneId.isBlank() || hostedZoneName.isBlank())) {
+            throw new IllegalArgumentException("A custom API domain needs api.domain.hostedZoneId and api.domain.hostedZoneName");
+        }
+    }
+
+    static ApiDomainSettings fromContext(ContextConfig config) {
+        return new ApiDomainSettings(
+                config.getString("api.domain.name", ""),
+                config.getString("api.domain.hostedZoneId", ""),
+                config.getString("api.domain.hostedZoneName", ""));
+    }
+
+    boolean enabled() {
+        return !domainName.isBlank();
+    }
+}
+
+/**
+ * Stage cache of the ECommerceAPI. Only the routes marked as cached are cached, keyed by their path
+ * parameters and the listed query strings.
+ */
+record ApiCacheSettings(
+        boolean enabled,
+        String clusterSize,
+        int ttlSeconds,
+        List<String> cacheKeyQueryStrings
+) {
+    private static final List<String> CLUSTER_SIZES =
+            List.of("0.5", "1.6", "6.1", "13.5", "28.4", "58.2", "118", "237");
+
+    ApiCacheSettings {
+        if (!CLUSTER_SIZES.contains(clusterSize)) {
+            throw new IllegalArgumentException("Cache cluster size must be one of " + CLUSTER_SIZES + ", got " + clusterSize);
+        }
+        if (ttlSeconds < 0 || ttlSeconds > 3600) {
+            throw new IllegalArgumentException("Cache TTL must be between 0 and 3600 seconds, got " + ttlSeconds);
+        }
+    }
+
+    static ApiCacheSettings fromContext(ContextConfig config) {
+        return new ApiCacheSettings(
+                config.getBoolean("api.cache.enabled", false),
+                config.getString("api.cache.clusterSize", "0.5"),
+                config.getInt("api.cache.ttlSeconds", 300),
+                config.getStringList("api.cache.keyQueryStrings", List.of()));
+    }
+}
+
+/**
+ * Stage-wide throttling of the ECommerceAPI with separate limits for the read (GET) and write
+ * (POST/PUT/DELETE) methods, and usage plans with API keys for partner clients.
+ * Usage plan limits are only enforced when apiKeyRequired is set.
+ */
+record ApiThrottleSettings(
+        double rateLimit,
+        int burstLimit,
+        double readRateLimit,
+        int readBurstLimit,
+        double writeRateLimit,
+        int writeBurstLimit,
+        boolean apiKeyRequired,
+        List<PartnerUsagePlan> partnerUsagePlans
+) {
+    ApiThrottleSettings {
+        if (rateLimit <= 0 || readRateLimit <= 0 || writeRateLimit <= 0) {
+            throw new IllegalArgumentException("Throttling rate limits must be positive");
+        }
+        if (burstLimit < 0 || readBurstLimit < 0 || writeBurstLimit < 0) {
+            throw new IllegalArgumentException("Throttling burst limits must not be negative");
+        }
+    }
+
+    static ApiThrottleSettings fromContext(ContextConfig config) {
+        return new ApiThrottleSettings(
+                config.getDouble("api.throttle.rateLimit", 1000),
+                config.getInt("api.throttle.burstLimit", 500),
+                config.getDouble("api.throttle.readRateLimit", 800),
+                config.getInt("api.throttle.readBurstLimit", 400),
+                config.getDouble("api.throttle.writeRateLimit", 100),
+                config.getInt("api.throttle.writeBurstLimit", 50),
+                config.getBoolean("api.throttle.apiKeyRequired", false),
+                config.getObjectList("api.throttle.partnerUsagePlans").stream()
+                        .map(PartnerUsagePlan::fromContext)
+                        .toList());
+    }
+
+    record PartnerUsagePlan(String name, double rateLimit, int burstLimit, int quotaLimit, Period quotaPeriod) {
+        PartnerUsagePlan {
+            if (name == null || !name.matches("[A-Za-z0-9]+")) {
+                throw new IllegalArgumentException("Partner usage plan names must be alphanumeric, got " + name);
+            }
+        }
+
+        static PartnerUsagePlan fromContext(ContextObject values) {
+            return new PartnerUsagePlan(
+                    values.getString("name"),
+                    values.getDouble("rateLimit"),
+                    values.getInt("burstLimit"),
+                    values.getInt("quotaLimit"),
+                    values.getEnum("quotaPeriod", Period.class, Period.DAY));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.myorg;
+
+import software.amazon.awscdk.Stack;
+import software.amazon.awscdk.StackProps;
+import software.amazon.awscdk.services.ec2.SecurityGroup;
+import software.amazon.awscdk.services.ec2.SecurityGroupProps;
+import software.amazon.awscdk.services.ec2.SubnetSelection;
+import software.amazon.awscdk.services.ec2.SubnetType;
+import software.amazon.awscdk.services.ec2.Vpc;
+import software.amazon.awscdk.services.elasticache.CfnReplicationGroup;
+import software.amazon.awscdk.services.elasticache.CfnReplicationGroupProps;
+import software.amazon.awscdk.services.elasticache.CfnSubnetGroup;
+import software.amazon.awscdk.services.elasticache.CfnSubnetGroupProps;
+import software.constructs.Construct;
+
+import java.util.Collections;
+
+public class CacheStack extends Stack {
+    private final CatalogCacheEndpoint catalogCacheEndpoint;
+
+    public CacheStack(final Construct scope, final String id, final StackProps props, CacheStackProps cacheStackProps) {
+        super(scope, id, props);
+
+        CacheSettings cacheSettings = cacheStackProps.cacheSettings();
+
+        SecurityGroup securityGroup = new SecurityGroup(this, "CatalogCacheSecurityGroup", SecurityGroupProps.builder()
+                .vpc(cacheStackProps.vpc())
+                .description("products catalog cache, ingress is added by the services that use it")
+                .allowAllOutbound(false)
+                .build());
+
+        CfnSubnetGroup subnetGroup = new CfnSubnetGroup(this, "CatalogCacheSubnetGroup", CfnSubnetGroupProps.builder()
+                .cacheSubnetGroupName("products-catalog")
+                .description("ECommerceVPC isolated subnets")
+                .subnetIds(cacheStackProps.vpc().selectSubnets(SubnetSelection.builder()
+                        .subnetType(SubnetType.PRIVATE_ISOLATED)
+                        .build()).getSubnetIds())
+                .build());
+
+        boolean clusterMode = cacheSettings.shards() > 1;
+        boolean replicated = cacheSettings.replicasPerShard() > 0;
+
+        CfnReplicationGroup replicationGroup = new CfnReplicationGroup(this, "CatalogCache",
+                CfnReplicationGroupProps.builder()
+                        .replicationGroupId("products-catalog")
+                        .replicationGroupDescription("Products catalog cache")
+                        .engine(cacheSettings.engine())
+                        .engineVersion(cacheSettings.engineVersion())
+                        .cacheNodeType(cacheSettings.nodeType())
+                        .numNodeGroups(cacheSettings.shards())
+                        .replicasPerNodeGroup(cacheSettings.replicasPerShard())
+                        .cacheParameterGroupName(clusterMode ? cacheSettings.clusterModeParameterGroup() : null)
+                        .automaticFailoverEnabled(clusterMode || replicated)
+                        .multiAzEnabled(replicated)
+                        .transitEncryptionEnabled(cacheSettings.transitEncryption())
+                        .atRestEncryptionEnabled(true)
+                        .cacheSubnetGroupName(subnetGroup.getRef())
+                        .securityGroupIds(Collections.singletonList(securityGroup.getSecurityGroupId()))
+                        .build());
+        replicationGroup.addDependency(subnetGroup);
+
+        this.catalogCacheEndpoint = new CatalogCacheEndpoint(
+                securityGroup,
+                clusterMode ? replicationGroup.getAttrConfigurationEndPointAddress() : replicationGroup.getAttrPrimaryEndPointAddress(),
+                clusterMode ? replicationGroup.getAttrConfigurationEndPointPort() : replicationGroup.getAttrPrimaryEndPointPort(),
+                clusterMode ? null : replicationGroup.getAttrReaderEndPointAddress(),
+                clusterMode,
+                cacheSettings.transitEncryption());
+    }
+
+    public CatalogCacheEndpoint getCatalogCacheEndpoint() {
+        return catalogCacheEndpoint;
+    }
+}
+
+record CacheStackProps(
+        Vpc vpc,
+        CacheSettings cacheSettings
+){}
+
+/**
+ * Connection details of the catalog cache handed to the services. readerAddress is null in cluster mode,
+ * where the client discovers the replicas through the configuration endpoint.
+ */
+record CatalogCacheEndpoint(
+        SecurityGroup securityGroup,
+        String address,
+        String port,
+        String readerAddress,
+        boolean clusterMode,
+        boolean tls
+){}
+
+/**
+ * Sizing of the catalog cache replication group. More than one shard switches the group to cluster mode.
+ */
+record CacheSettings(
+        boolean enabled,
+        String engine,
+        String engineVersion,
+        String nodeType,
+        int shards,
+        int replicasPerShard,
+        boolean transitEncryption
+) {
+    CacheSettings {
+        if (!engine.equals("valkey") && !engine.equals("redis")) {
+            throw new IllegalArgumentException("Cache engine must be valkey or redis, got " + engine);
+        }
+        if (shards < 1 || shards > 500) {
+            throw new IllegalArgumentException("Cache shards must be between 1 and 500, got " + shards);
+        }
+        if (replicasPerShard < 0 || replicasPerShard > 5) {
+            throw new IllegalArgumentException("Cache replicas per shard must be between 0 and 5, got " + replicasPerShard);
+        }
+    }
+
+    static CacheSettings fromContext(ContextConfig config) {
+        return new CacheSettings(
+                config.getBoolean("catalogCache.enabled", false),
+                config.getString("catalogCache.engine", "valkey").toLowerCase(),
+                config.getString("catalogCache.engineVersion", "7.2"),
+                config.getString("catalogCache.nodeType", "cache.t4g.small"),
+                config.getInt("catalogCache.shards", 1),
+                config.getInt("catalogCache.replicasPerShard", 1),
+                config.getBoolean("catalogCache.transitEncryption", true));
+    }
+
+    String clusterModeParameterGroup() {
+        return "default." + engine + engineVersion.split("\\.")[0] + ".cluster.on";
+    }
+}
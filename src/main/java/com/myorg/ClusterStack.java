@@ -19,6 +19,7 @@ public class ClusterStack extends Stack {
                 .clusterName("ECommerceCluster")
                 .vpc(clusterStackProps.vpc())
                 .containerInsightsV2(ContainerInsights.ENHANCED)
+                .enableFargateCapacityProviders(true)
                 .build());
 
     }
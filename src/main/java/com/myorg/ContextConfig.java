@@ -0,0 +1,185 @@
+package com.myorg;
+
+import software.constructs.Construct;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Typed access to the CDK context (the "context" block of cdk.json or -c key=value on the command line).
+ * Values passed on the command line always arrive as strings, values from cdk.json keep their JSON type,
+ * so every getter accepts both.
+ * A key that is not set directly is looked up in the block of the selected profile in the "profiles" map,
+ * then falls back to the getter's default.
+ * Every key read is recorded, so keys of a profile block that no setting reads can be reported as typos.
+ */
+final class ContextConfig {
+
+    private final Construct scope;
+    private final Profile profile;
+    private final Map<String, Map<String, Object>> profiles;
+    private final Set<String> readKeys = new HashSet<>();
+
+    private ContextConfig(Construct scope, Profile profile, Map<String, Map<String, Object>> profiles) {
+        this.scope = scope;
+        this.profile = profile;
+        this.profiles = profiles;
+    }
+
+    @SuppressWarnings("unchecked")
+    static ContextConfig of(Construct scope) {
+        Object profileName = scope.getNode().tryGetContext("profile");
+        Profile profile = Profile.fromContextName(profileName == null ? "dev" : profileName.toString());
+
+        Object profiles = scope.getNode().tryGetContext("profiles");
+        if (profiles == null) {
+            return new ContextConfig(scope, profile, Map.of());
+        }
+        if (!(profiles instanceof Map<?, ?> profileMap)) {
+            throw new IllegalArgumentException("Context value 'profiles' must be a JSON object of profile blocks");
+        }
+        Map<String, Map<String, Object>> profileBlocks = new LinkedHashMap<>();
+        profileMap.forEach((name, values) -> {
+            Profile.fromContextName(name.toString());
+            if (!(values instanceof Map<?, ?>)) {
+                throw new IllegalArgumentException("Profile '" + name + "' must be a JSON object");
+            }
+            profileBlocks.put(name.toString(), (Map<String, Object>) values);
+        });
+        return new ContextConfig(scope, profile, profileBlocks);
+    }
+
+    Profile profile() {
+        return profile;
+    }
+
+    Object get(String key) {
+        readKeys.add(key);
+        Object value = scope.getNode().tryGetContext(key);
+        return value != null ? value : profiles.getOrDefault(profile.contextName(), Map.of()).get(key);
+    }
+
+    /**
+     * Fails on keys of any profile block that no setting has read, e.g. a misspelled productsService.scalng.maxTasks.
+     * Must run after all settings have been read. Keys set with -c cannot be checked, as they share the context
+     * with the CDK's own keys.
+     */
+    void checkProfileKeysRead() {
+        List<String> unread = profiles.entrySet().stream()
+                .flatMap(block -> block.getValue().keySet().stream()
+                        .filter(key -> !readKeys.contains(key))
+                        .map(key -> "profiles." + block.getKey() + "." + key))
+                .sorted()
+                .toList();
+        if (!unread.isEmpty()) {
+            throw new IllegalArgumentException("Unknown context keys in profile blocks: " + String.join(", ", unread));
+        }
+    }
+
+    String getString(String key, String defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : value.toString();
+    }
+
+    int getInt(String key, int defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : toInt(key, value);
+    }
+
+    double getDouble(String key, double defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : toDouble(key, value);
+    }
+
+    boolean getBoolean(String key, boolean defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : toBoolean(key, value);
+    }
+
+    /**
+     * Reads a JSON array from cdk.json or a comma separated string from the command line.
+     */
+    List<String> getStringList(String key, List<String> defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : toStringList(value);
+    }
+
+    /**
+     * Reads a JSON array of objects; such values can only be set in cdk.json.
+     * Each entry is named after its position for error messages, e.g. tracing.rules[1].
+     */
+    @SuppressWarnings("unchecked")
+    List<ContextObject> getObjectList(String key) {
+        Object value = get(key);
+        if (value == null) {
+            return List.of();
+        }
+        if (!(value instanceof List<?> list) || !list.stream().allMatch(item -> item instanceof Map)) {
+            throw new IllegalArgumentException("Context value '" + key + "' must be a JSON array of objects");
+        }
+        return IntStream.range(0, list.size())
+                .mapToObj(index -> new ContextObject(key + "[" + index + "]", (Map<String, Object>) list.get(index)))
+                .toList();
+    }
+
+    <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : toEnum(key, value, type);
+    }
+
+    static int toInt(String key, Object value) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Context value '" + key + "' must be an integer but was '" + value + "'", e);
+        }
+    }
+
+    static double toDouble(String key, Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Context value '" + key + "' must be a number but was '" + value + "'", e);
+        }
+    }
+
+    static boolean toBoolean(String key, Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        String text = value.toString().trim();
+        if (text.equalsIgnoreCase("true") || text.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(text);
+        }
+        throw new IllegalArgumentException("Context value '" + key + "' must be true or false but was '" + value + "'");
+    }
+
+    static List<String> toStringList(Object value) {
+        if (value instanceof List<?> list) {
+            return list.stream().map(Object::toString).toList();
+        }
+        return Arrays.stream(value.toString().split(","))
+                .map(String::trim)
+                .filter(item -> !item.isEmpty())
+                .toList();
+    }
+
+    static <E extends Enum<E>> E toEnum(String key, Object value, Class<E> type) {
+        try {
+            return Enum.valueOf(type, value.toString().trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Context value '" + key + "' is not a valid " + type.getSimpleName() + ": '" + value + "'", e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.myorg;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One JSON object of a context array such as api.throttle.partnerUsagePlans, with the same typed getters as
+ * {@link ContextConfig}. Errors name the offending entry, e.g. 'tracing.rules[1].priority'.
+ * The getters without a default reject a missing value.
+ */
+final class ContextObject {
+
+    private final String key;
+    private final Map<String, Object> values;
+
+    ContextObject(String key, Map<String, Object> values) {
+        this.key = key;
+        this.values = values;
+    }
+
+    /**
+     * Full context key of a value of this object, e.g. tracing.rules[1].priority.
+     */
+    String key(String name) {
+        return key + "." + name;
+    }
+
+    boolean has(String name) {
+        return values.get(name) != null;
+    }
+
+    private Object required(String name) {
+        Object value = values.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Context value '" + key(name) + "' is required");
+        }
+        return value;
+    }
+
+    String getString(String name) {
+        return required(name).toString();
+    }
+
+    String getString(String name, String defaultValue) {
+        return has(name) ? getString(name) : defaultValue;
+    }
+
+    int getInt(String name) {
+        return ContextConfig.toInt(key(name), required(name));
+    }
+
+    int getInt(String name, int defaultValue) {
+        return has(name) ? getInt(name) : defaultValue;
+    }
+
+    double getDouble(String name) {
+        return ContextConfig.toDouble(key(name), required(name));
+    }
+
+    double getDouble(String name, double defaultValue) {
+        return has(name) ? getDouble(name) : defaultValue;
+    }
+
+    List<String> getStringList(String name, List<String> defaultValue) {
+        return has(name) ? ContextConfig.toStringList(required(name)) : defaultValue;
+    }
+
+    <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue) {
+        return has(name) ? ContextConfig.toEnum(key(name), required(name), type) : defaultValue;
+    }
+}
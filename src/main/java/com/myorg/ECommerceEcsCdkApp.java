@@ -1,40 +1,75 @@
 package com.myorg;
 
 import software.amazon.awscdk.App;
+import software.amazon.awscdk.Aspects;
 import software.amazon.awscdk.Environment;
 import software.amazon.awscdk.StackProps;
 import software.amazon.awscdk.services.ec2.Vpc;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ECommerceEcsCdkApp {
     public static void main(final String[] args) {
         App app = new App();
+        createStacks(app);
+        app.synth();
+    }
+
+    /**
+     * Creates the stacks of every configured region and registers the performance guardrails on the app.
+     */
+    static void createStacks(App app) {
+        ContextConfig config = ContextConfig.of(app);
+
+        ProductsServiceStack primaryProductsServiceStack = null;
+        List<String> regions = RegionPlacement.regionsFromContext(config);
+        for (String region : regions) {
+            ProductsServiceStack productsServiceStack = createRegion(app, config,
+                    new RegionPlacement(region, regions), primaryProductsServiceStack);
+            if (primaryProductsServiceStack == null) {
+                primaryProductsServiceStack = productsServiceStack;
+            }
+        }
+
+        Aspects.of(app).add(new PerformanceGuardrails(config.profile(), GuardrailSettings.fromContext(config)));
+        config.checkProfileKeysRead();
+    }
 
+    /**
+     * Creates the complete stack set of one region. Stacks outside the primary region depend on the primary
+     * products service stack, which owns the global products table.
+     */
+    private static ProductsServiceStack createRegion(App app, ContextConfig config, RegionPlacement placement,
+                                                     ProductsServiceStack primaryProductsServiceStack) {
         Environment environment = Environment.builder().
-                account("199840700690").
-                region("eu-north-1").
+                account(config.getString("account", System.getenv("CDK_DEFAULT_ACCOUNT"))).
+                region(placement.region()).
                 build();
 
         Map<String, String> infraTags = new HashMap<String, String>();
 
         infraTags.put("team", "KucharskiCode");
         infraTags.put("cost", "EcommerceInfra");
+        infraTags.put("environment", config.profile().contextName());
 
-        EcrStack ercStack = new EcrStack(app, "Ecr",
+        EcrSettings ecrSettings = EcrSettings.fromContext(config);
+        EcrStack ercStack = new EcrStack(app, placement.stackId("Ecr"),
                 StackProps.builder()
                         .env(environment)
                         .tags(infraTags)
-                        .build());
+                        .build(), new EcrStackProps(placement, ecrSettings));
+
+        boolean privateNetworking = config.getBoolean("network.privateNetworking", false);
 
-        VpcStack vpcStack = new VpcStack(app, "Vpc", StackProps.builder()
+        VpcStack vpcStack = new VpcStack(app, placement.stackId("Vpc"), StackProps.builder()
                 .env(environment)
                 .tags(infraTags)
-                .build());
+                .build(), new VpcStackProps(privateNetworking, config.getInt("network.maxAzs", 2)));
 
-        ClusterStack clusterStack = new ClusterStack(app, "Cluster",
+        ClusterStack clusterStack = new ClusterStack(app, placement.stackId("Cluster"),
                 StackProps.builder()
                         .env(environment)
                         .tags(infraTags)
@@ -42,18 +77,36 @@ public class ECommerceEcsCdkApp {
         clusterStack.addDependency(vpcStack);
 
 
-        NlbStack nlbStack = new NlbStack(app, "Nlb",
+        MicroserviceSpec productsServiceSpec = MicroserviceSpec.fromContext(config, "productsService",
+                "ProductsService", 10, ProductsServiceStack.API_ROUTES);
+
+        NlbStack nlbStack = new NlbStack(app, placement.stackId("Nlb"),
                 StackProps.builder()
                         .env(environment)
                         .tags(infraTags)
-                        .build(), new NlbStackProps(vpcStack.getVpc()));
+                        .build(), new NlbStackProps(vpcStack.getVpc(), LoadBalancerSettings.fromContext(config),
+                        productsServiceSpec));
         nlbStack.addDependency(vpcStack);
 
+        CacheSettings cacheSettings = CacheSettings.fromContext(config);
+        CacheStack cacheStack = null;
+        if (cacheSettings.enabled()) {
+            cacheStack = new CacheStack(app, placement.stackId("Cache"),
+                    StackProps.builder()
+                            .env(environment)
+                            .tags(infraTags)
+                            .build(), new CacheStackProps(vpcStack.getVpc(), cacheSettings));
+            cacheStack.addDependency(vpcStack);
+        }
+
         Map<String, String> productsServiceTags = new HashMap<>();
         productsServiceTags.put("team", "KucharskiCode");
         productsServiceTags.put("cost", "ProductsService");
+        productsServiceTags.put("environment", config.profile().contextName());
+
+        TableCapacity productsDdbCapacity = TableCapacity.fromContext(config, "productsDdb");
 
-        ProductsServiceStack productsServiceStack = new ProductsServiceStack(app, "ProductsService",
+        ProductsServiceStack productsServiceStack = new ProductsServiceStack(app, placement.stackId("ProductsService"),
                 StackProps.builder()
                         .env(environment)
                         .tags(productsServiceTags)
@@ -61,26 +114,129 @@ public class ECommerceEcsCdkApp {
                 new ProductsServiceProps(
                         vpcStack.getVpc(),
                         clusterStack.getCluster(),
-                        nlbStack.getNetworkLoadBalancer(),
-                        nlbStack.getApplicationLoadBalancer(),
-                        ercStack.getProductsServiceRepository()));
+                        nlbStack.getApplicationListener(),
+                        nlbStack.getProductsServiceAlbTargetGroup(),
+                        nlbStack.getNlbTargetGroup(),
+                        ercStack.getProductsServiceRepository(),
+                        productsServiceSpec,
+                        productsDdbCapacity,
+                        TableIndex.fromContext(config, "productsDdb.indexes", ProductsServiceStack.PRODUCTS_KEY,
+                                productsDdbCapacity),
+                        privateNetworking,
+                        ecrSettings.mirrorPublicImages(),
+                        DaxSettings.fromContext(config),
+                        cacheStack != null ? cacheStack.getCatalogCacheEndpoint() : null,
+                        ChangeStreamSettings.fromContext(config),
+                        placement));
 
         productsServiceStack.addDependency(vpcStack);
         productsServiceStack.addDependency(clusterStack);
         productsServiceStack.addDependency(nlbStack);
         productsServiceStack.addDependency(ercStack);
-
-        ApiStack apiStack = new ApiStack(app, "Api", StackProps.builder()
-                .env(environment)
-                .tags(infraTags)
-                .build(),
-                new ApiStackProps(
+        if (cacheStack != null) {
+            productsServiceStack.addDependency(cacheStack);
+        }
+        if (primaryProductsServiceStack != null) {
+            // Replica tables only exist once the primary stack has added them to the global table
+            productsServiceStack.addDependency(primaryProductsServiceStack);
+        }
+
+        List<ApiRoute> apiRoutes = productsServiceSpec.routes();
+        TracingSettings tracingSettings = TracingSettings.fromContext(config);
+        FrontDoor frontDoor = config.getEnum("api.frontDoor", FrontDoor.class, FrontDoor.REST_NLB);
+
+        // Read even without the REST API, so that profile keys of every front door count as known
+        ApiCacheSettings apiCacheSettings = ApiCacheSettings.fromContext(config);
+        ApiThrottleSettings apiThrottleSettings = ApiThrottleSettings.fromContext(config);
+        ApiDomainSettings apiDomainSettings = ApiDomainSettings.fromContext(config);
+        ApiLoggingSettings apiLoggingSettings = ApiLoggingSettings.fromContext(config);
+        ApiCompressionSettings apiCompressionSettings = ApiCompressionSettings.fromContext(config);
+
+        ApiStack apiStack = null;
+        if (frontDoor.usesRestApi()) {
+            apiStack = new ApiStack(app, placement.stackId("Api"), StackProps.builder()
+                    .env(environment)
+                    .tags(infraTags)
+                    .build(),
+                    new ApiStackProps(
+                            nlbStack.getNetworkLoadBalancer(),
+                            nlbStack.getVpcLink(),
+                            apiCacheSettings,
+                            apiThrottleSettings,
+                            apiDomainSettings,
+                            apiRoutes,
+                            apiLoggingSettings,
+                            tracingSettings,
+                            apiCompressionSettings,
+                            placement));
+
+            apiStack.addDependency(nlbStack);
+        }
+
+        if (frontDoor.usesHttpApi()) {
+            HttpApiStack httpApiStack = new HttpApiStack(app, placement.stackId("HttpApi"), StackProps.builder()
+                    .env(environment)
+                    .tags(infraTags)
+                    .build(),
+                    new HttpApiStackProps(
+                            vpcStack.getVpc(),
+                            nlbStack.getApplicationListener(),
+                            apiRoutes));
+
+            httpApiStack.addDependency(productsServiceStack);
+        }
+
+        ObservabilityStack observabilityStack = new ObservabilityStack(app, placement.stackId("Observability"),
+                StackProps.builder()
+                        .env(environment)
+                        .tags(infraTags)
+                        .build(),
+                new ObservabilityStackProps(
+                        apiStack != null ? apiStack.getRestApi() : null,
                         nlbStack.getNetworkLoadBalancer(),
-                        nlbStack.getVpcLink()));
-
-        apiStack.addDependency(nlbStack);
-
-        app.synth();
+                        nlbStack.getNlbTargetGroup(),
+                        nlbStack.getApplicationLoadBalancer(),
+                        productsServiceStack.getAlbTargetGroup(),
+                        productsServiceStack.getFargateService(),
+                        FargateMicroservice.tracingName(productsServiceSpec),
+                        productsServiceStack.getProductsDdb(),
+                        AlarmSettings.fromContext(config),
+                        tracingSettings,
+                        placement));
+        observabilityStack.addDependency(productsServiceStack);
+        if (apiStack != null) {
+            observabilityStack.addDependency(apiStack);
+        }
+
+        LoadTestSettings loadTestSettings = LoadTestSettings.fromContext(config);
+        if (loadTestSettings.enabled()) {
+            ApiRoute listRoute = apiRoutes.stream()
+                    .filter(route -> route.readOnly() && route.pathParameters().isEmpty())
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Load test needs a GET route without path parameters"));
+            String targetUrl;
+            if (loadTestSettings.target() == LoadTestTarget.API) {
+                if (apiStack == null) {
+                    throw new IllegalArgumentException("loadTest.target API needs the REST API front door");
+                }
+                targetUrl = apiStack.getRestApi().urlForPath(listRoute.path());
+            } else {
+                targetUrl = "http://" + nlbStack.getNetworkLoadBalancer().getLoadBalancerDnsName() + ":"
+                        + NlbStack.LISTENER_PORT + listRoute.backendPath();
+            }
+
+            LoadTestStack loadTestStack = new LoadTestStack(app, placement.stackId("LoadTest"),
+                    StackProps.builder()
+                            .env(environment)
+                            .tags(infraTags)
+                            .build(),
+                    new LoadTestStackProps(vpcStack.getVpc(), clusterStack.getCluster(), targetUrl, loadTestSettings));
+            loadTestStack.addDependency(productsServiceStack);
+            if (apiStack != null) {
+                loadTestStack.addDependency(apiStack);
+            }
+        }
+
+        return productsServiceStack;
     }
 }
-
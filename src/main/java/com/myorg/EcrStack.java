@@ -1,29 +1,137 @@
 package com.myorg;
 
+import software.amazon.awscdk.Duration;
 import software.amazon.awscdk.RemovalPolicy;
 import software.amazon.awscdk.Stack;
 import software.amazon.awscdk.StackProps;
-import software.amazon.awscdk.services.ecr.Repository;
-import software.amazon.awscdk.services.ecr.RepositoryProps;
-import software.amazon.awscdk.services.ecr.TagMutability;
+import software.amazon.awscdk.services.ecr.*;
 import software.constructs.Construct;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class EcrStack extends Stack {
-    private final Repository productsServiceRepository;
+    private static final String PRODUCTS_SERVICE_REPOSITORY = "productsservice";
+    static final String PUBLIC_MIRROR_PREFIX = "ecr-public";
+
+    private final IRepository productsServiceRepository;
 
-    public EcrStack(final Construct scope, final String id, final StackProps props) {
+    public EcrStack(final Construct scope, final String id, final StackProps props, EcrStackProps ecrStackProps) {
         super(scope, id, props);
 
+        EcrSettings ecrSettings = ecrStackProps.ecrSettings();
+        if (ecrSettings.mirrorPublicImages()) {
+            this.createPublicImageMirror(ecrSettings);
+        }
+
+        RegionPlacement placement = ecrStackProps.placement();
+        if (!placement.primary()) {
+            // Filled by the replication rule of the primary region on every push
+            this.productsServiceRepository = Repository.fromRepositoryName(this, "ProductsService",
+                    PRODUCTS_SERVICE_REPOSITORY);
+            return;
+        }
+
         this.productsServiceRepository = new Repository(this, "ProductsService",
                 RepositoryProps.builder()
-                        .repositoryName("productsservice")
+                        .repositoryName(PRODUCTS_SERVICE_REPOSITORY)
                         .removalPolicy(RemovalPolicy.DESTROY)
                         .imageTagMutability(TagMutability.IMMUTABLE)
+                        .lifecycleRules(this.createLifecycleRules(ecrSettings))
                         .build() );
 
+        if (!placement.replicaRegions().isEmpty()) {
+            new CfnReplicationConfiguration(this, "ReplicationConfiguration", CfnReplicationConfigurationProps.builder()
+                    .replicationConfiguration(CfnReplicationConfiguration.ReplicationConfigurationProperty.builder()
+                            .rules(Collections.singletonList(CfnReplicationConfiguration.ReplicationRuleProperty.builder()
+                                    .destinations(placement.replicaRegions().stream()
+                                            .map(region -> CfnReplicationConfiguration.ReplicationDestinationProperty.builder()
+                                                    .region(region)
+                                                    .registryId(this.getAccount())
+                                                    .build())
+                                            .toList())
+                                    .repositoryFilters(Collections.singletonList(
+                                            CfnReplicationConfiguration.RepositoryFilterProperty.builder()
+                                                    .filter(PRODUCTS_SERVICE_REPOSITORY)
+                                                    .filterType("PREFIX_MATCH")
+                                                    .build()))
+                                    .build()))
+                            .build())
+                    .build());
+        }
     }
 
-    public Repository getProductsServiceRepository() {
+    /**
+     * Untagged images are expired after a day unless SOCI indexes are pushed: those are untagged artifacts
+     * that reference their image and must live as long as it does.
+     */
+    private List<LifecycleRule> createLifecycleRules(EcrSettings ecrSettings) {
+        List<LifecycleRule> lifecycleRules = new ArrayList<>();
+        if (!ecrSettings.sociIndex()) {
+            lifecycleRules.add(LifecycleRule.builder()
+                    .description("Expire untagged images")
+                    .tagStatus(TagStatus.UNTAGGED)
+                    .maxImageAge(Duration.days(1))
+                    .build());
+        }
+        lifecycleRules.add(LifecycleRule.builder()
+                .description("Keep the newest " + ecrSettings.maxImages() + " tagged images")
+                .tagStatus(TagStatus.TAGGED)
+                .tagPatternList(Collections.singletonList("*"))
+                .maxImageCount(ecrSettings.maxImages())
+                .build());
+        return lifecycleRules;
+    }
+
+    /**
+     * Pull-through cache for public.ecr.aws, so sidecar images are pulled from ECR in the task's own region
+     * (and through the VPC endpoints with private networking). The repositories it creates on first pull
+     * get the same image count limit as the service repository.
+     */
+    private void createPublicImageMirror(EcrSettings ecrSettings) {
+        new CfnPullThroughCacheRule(this, "PublicImageMirror", CfnPullThroughCacheRuleProps.builder()
+                .ecrRepositoryPrefix(PUBLIC_MIRROR_PREFIX)
+                .upstreamRegistryUrl("public.ecr.aws")
+                .build());
+
+        new CfnRepositoryCreationTemplate(this, "PublicImageMirrorTemplate", CfnRepositoryCreationTemplateProps.builder()
+                .prefix(PUBLIC_MIRROR_PREFIX)
+                .appliedFor(Collections.singletonList("PULL_THROUGH_CACHE"))
+                .description("Repositories created by the public.ecr.aws pull-through cache")
+                .lifecyclePolicy("{\"rules\":[{\"rulePriority\":1,\"description\":\"Keep the newest images\","
+                        + "\"selection\":{\"tagStatus\":\"any\",\"countType\":\"imageCountMoreThan\","
+                        + "\"countNumber\":" + ecrSettings.maxImages() + "},\"action\":{\"type\":\"expire\"}}]}")
+                .build());
+    }
+
+    public IRepository getProductsServiceRepository() {
         return productsServiceRepository;
     }
 }
+
+record EcrStackProps(RegionPlacement placement, EcrSettings ecrSettings) {}
+
+/**
+ * Image storage: how many tagged images each repository keeps, whether SOCI indexes are pushed next to the
+ * service images (so untagged artifacts must not be expired), and whether public sidecar images are served
+ * from a pull-through cache in this registry.
+ */
+record EcrSettings(
+        int maxImages,
+        boolean sociIndex,
+        boolean mirrorPublicImages
+) {
+    EcrSettings {
+        if (maxImages < 1) {
+            throw new IllegalArgumentException("ECR must keep at least one image, got " + maxImages);
+        }
+    }
+
+    static EcrSettings fromContext(ContextConfig config) {
+        return new EcrSettings(
+                config.getInt("ecr.maxImages", 30),
+                config.getBoolean("ecr.sociIndex", false),
+                config.getBoolean("ecr.mirrorPublicImages", false));
+    }
+}
@@ -0,0 +1,400 @@
+package com.myorg;
+
+import software.amazon.awscdk.ArnComponents;
+import software.amazon.awscdk.Duration;
+import software.amazon.awscdk.RemovalPolicy;
+import software.amazon.awscdk.Size;
+import software.amazon.awscdk.Stack;
+import software.amazon.awscdk.services.applicationautoscaling.ScalingSchedule;
+import software.amazon.awscdk.services.applicationautoscaling.Schedule;
+import software.amazon.awscdk.services.ec2.ISecurityGroup;
+import software.amazon.awscdk.services.ec2.IVpc;
+import software.amazon.awscdk.services.ec2.Peer;
+import software.amazon.awscdk.services.ec2.Port;
+import software.amazon.awscdk.services.ec2.SubnetSelection;
+import software.amazon.awscdk.services.ec2.SubnetType;
+import software.amazon.awscdk.services.ec2.Vpc;
+import software.amazon.awscdk.services.ecs.*;
+import software.amazon.awscdk.services.ecs.Protocol;
+import software.amazon.awscdk.services.elasticloadbalancingv2.*;
+import software.amazon.awscdk.services.elasticloadbalancingv2.HealthCheck;
+import software.amazon.awscdk.services.iam.IRole;
+import software.amazon.awscdk.services.iam.ManagedPolicy;
+import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.logs.LogGroup;
+import software.amazon.awscdk.services.logs.LogGroupProps;
+import software.amazon.awscdk.services.s3.assets.Asset;
+import software.amazon.awscdk.services.s3.assets.AssetProps;
+import software.constructs.Construct;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Java service on the ECommerceCluster: task definition with the application container and an X-Ray
+ * sidecar, the Fargate service, its ALB target group behind a path rule on the shared listener, and task
+ * auto-scaling. A service whose target groups already exist elsewhere registers into those instead. Service specific wiring (tables, caches, queues) is added by the owning stack through
+ * {@link #getContainer()} and the task role.
+ */
+public class FargateMicroservice extends Construct {
+    private static final String PUBLIC_REGISTRY = "public.ecr.aws/";
+    private static final String LOG_ROUTER_FILTERS = "/fluent-bit/filters.conf";
+
+    private final FargateTaskDefinition taskDefinition;
+    private final ContainerDefinition container;
+    private final FargateService fargateService;
+    private final ApplicationTargetGroup targetGroup;
+
+    public FargateMicroservice(final Construct scope, final String id, FargateMicroserviceProps props) {
+        super(scope, id);
+
+        MicroserviceSpec spec = props.spec();
+        ServiceCompute compute = spec.compute();
+        HealthCheckSettings healthCheck = spec.healthCheck();
+
+        this.taskDefinition = new FargateTaskDefinition(this, "TaskDefinition", FargateTaskDefinitionProps.builder()
+                .family(spec.family())
+                .cpu(spec.taskCpu())
+                .memoryLimitMiB(spec.taskMemoryMiB())
+                .runtimePlatform(RuntimePlatform.builder()
+                        .cpuArchitecture(compute.toCpuArchitecture())
+                        .operatingSystemFamily(OperatingSystemFamily.LINUX)
+                        .build())
+                .build());
+
+        LoggingSettings logging = spec.logging();
+        LogGroup logGroup = new LogGroup(this, "LogGroup", LogGroupProps.builder()
+                .logGroupName(spec.name() + "Logs")
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .retention(logging.retention())
+                .build());
+        LogGroup xrayLogGroup = new LogGroup(this, "XRayLogGroup", LogGroupProps.builder()
+                .logGroupName("XRay" + spec.name())
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .retention(logging.retention())
+                .build());
+
+        Map<String, String> envVariables = new HashMap<>();
+        envVariables.put("SERVER_PORT", String.valueOf(spec.containerPort()));
+        envVariables.put("AWS_REGION", Stack.of(this).getRegion());
+        envVariables.put("AWS_XRAY_DAEMON_ADDRESS", "0.0.0.0:2000");
+        envVariables.put("AWS_XRAY_CONTEXT_MISSING", "IGNORE_ERROR");
+        envVariables.put("AWS_XRAY_TRACING_NAME", tracingName(spec));
+        envVariables.put("LOGGING_LEVEL_ROOT", "INFO");
+        envVariables.put("JAVA_TOOL_OPTIONS",
+                spec.jvm().javaToolOptions(spec.containerCpu(), spec.containerMemoryMiB()));
+
+        this.container = this.taskDefinition.addContainer(spec.name() + "Container",
+                ContainerDefinitionOptions.builder()
+                        .image(props.image())
+                        .containerName(spec.containerName())
+                        .logging(this.createLogDriver(logGroup, spec.name() + "Log", logging))
+                        .portMappings(Collections.singletonList(PortMapping.builder()
+                                .containerPort(spec.containerPort())
+                                .protocol(Protocol.TCP)
+                                .build()))
+                        .environment(envVariables)
+                        .cpu(spec.containerCpu())
+                        .memoryLimitMiB(spec.containerMemoryMiB())
+                        .healthCheck(software.amazon.awscdk.services.ecs.HealthCheck.builder()
+                                .command(List.of("CMD-SHELL", healthCheck.containerCommandFor(spec.containerPort())))
+                                .interval(Duration.seconds(healthCheck.intervalSeconds()))
+                                .timeout(Duration.seconds(healthCheck.timeoutSeconds()))
+                                .retries(healthCheck.unhealthyThreshold())
+                                .startPeriod(Duration.seconds(healthCheck.startPeriodSeconds()))
+                                .build())
+                        .build());
+
+        this.taskDefinition.addContainer("xray", ContainerDefinitionOptions.builder()
+                .image(this.publicImage(spec.xray().image(), props))
+                .containerName("XRay" + spec.name())
+                .logging(this.createLogDriver(xrayLogGroup, "XRay" + spec.name(), logging))
+                .portMappings(Collections.singletonList(PortMapping.builder()
+                        .containerPort(2000)
+                        .protocol(Protocol.UDP)
+                        .build()))
+                .cpu(spec.xray().cpu())
+                .memoryLimitMiB(spec.xray().memoryMiB())
+                .build());
+        this.taskDefinition.getTaskRole().addManagedPolicy(ManagedPolicy.fromAwsManagedPolicyName("AWSXrayWriteOnlyAccess"));
+        // Added after the application container, which has to stay the task's default container for the load balancer
+        if (logging.fireLens()) {
+            this.addLogRouter(logGroup, logging, props);
+        }
+
+        this.fargateService = new FargateService(this, "Service", FargateServiceProps.builder()
+                .serviceName(spec.name())
+                .cluster(props.cluster())
+                .taskDefinition(this.taskDefinition)
+                .capacityProviderStrategies(compute.capacityProviderStrategies())
+                // No desiredCount: the scalable target below owns the task count, so a deploy does not reset it
+                .healthCheckGracePeriod(Duration.seconds(healthCheck.gracePeriodSeconds()))
+                .circuitBreaker(DeploymentCircuitBreaker.builder()
+                        .enable(spec.deployment().circuitBreaker())
+                        .rollback(spec.deployment().rollback())
+                        .build())
+                .minHealthyPercent(spec.deployment().minHealthyPercent())
+                .maxHealthyPercent(spec.deployment().maxHealthyPercent())
+                // With private networking the tasks reach AWS services through the VPC endpoints of VpcStack
+                .assignPublicIp(!props.privateNetworking())
+                .vpcSubnets(SubnetSelection.builder()
+                        .subnetType(props.privateNetworking() ? SubnetType.PRIVATE_ISOLATED : SubnetType.PUBLIC)
+                        .build())
+                .build());
+        this.getSecurityGroup().addIngressRule(
+                props.privateNetworking()
+                        ? Peer.ipv4(props.vpc().getVpcCidrBlock())
+                        : Peer.anyIpv4(),
+                Port.tcp(spec.containerPort()));
+
+        this.targetGroup = props.albTargetGroup() != null
+                ? props.albTargetGroup()
+                : new ApplicationTargetGroup(this, "AlbTargetGroup", albTargetGroupProps(spec, props.vpc()));
+        this.targetGroup.addTarget(this.fargateService);
+        if (props.nlbTargetGroup() != null) {
+            props.nlbTargetGroup().addTarget(this.fargateService.loadBalancerTarget(LoadBalancerTargetOptions.builder()
+                    .containerName(spec.containerName())
+                    .containerPort(spec.containerPort())
+                    .protocol(Protocol.TCP)
+                    .build()));
+        }
+
+        // The rule lives in this construct, so the shared listener's stack never depends on a service stack
+        new ApplicationListenerRule(this, "AlbListenerRule", ApplicationListenerRuleProps.builder()
+                .listener(props.applicationListener())
+                .priority(spec.listenerPriority())
+                .conditions(Collections.singletonList(ListenerCondition.pathPatterns(spec.pathPatterns())))
+                .targetGroups(Collections.singletonList(this.targetGroup))
+                .build());
+
+        this.autoScaleService(spec.scaling());
+    }
+
+    /**
+     * Name of the service segments in X-Ray, which sampling rules match on.
+     */
+    static String tracingName(MicroserviceSpec spec) {
+        return spec.name().toLowerCase();
+    }
+
+    /**
+     * ALB target group of a service, for the owning construct or a stack that keeps the group of an existing service.
+     */
+    static ApplicationTargetGroupProps albTargetGroupProps(MicroserviceSpec spec, IVpc vpc) {
+        HealthCheckSettings healthCheck = spec.healthCheck();
+        return ApplicationTargetGroupProps.builder()
+                .targetGroupName(spec.containerName() + "Alb")
+                .vpc(vpc)
+                .targetType(TargetType.IP)
+                .port(spec.containerPort())
+                .protocol(ApplicationProtocol.HTTP)
+                .deregistrationDelay(Duration.seconds(spec.deployment().deregistrationDelaySeconds()))
+                .healthCheck(HealthCheck.builder()
+                        .enabled(true)
+                        .interval(Duration.seconds(healthCheck.intervalSeconds()))
+                        .timeout(Duration.seconds(healthCheck.timeoutSeconds()))
+                        .healthyThresholdCount(healthCheck.healthyThreshold())
+                        .unhealthyThresholdCount(healthCheck.unhealthyThreshold())
+                        .path(healthCheck.path())
+                        .port(String.valueOf(spec.containerPort()))
+                        .build())
+                .build();
+    }
+
+    public FargateTaskDefinition getTaskDefinition() {
+        return taskDefinition;
+    }
+
+    public ContainerDefinition getContainer() {
+        return container;
+    }
+
+    public FargateService getFargateService() {
+        return fargateService;
+    }
+
+    public ApplicationTargetGroup getTargetGroup() {
+        return targetGroup;
+    }
+
+    public ISecurityGroup getSecurityGroup() {
+        return fargateService.getConnections().getSecurityGroups().get(0);
+    }
+
+    /**
+     * Fluent Bit sidecar that receives the logs of the other containers. The init image loads the filters
+     * from S3, which is the only way to add a custom configuration on Fargate without building an image.
+     */
+    private void addLogRouter(LogGroup logGroup, LoggingSettings logging, FargateMicroserviceProps props) {
+        Asset filters = new Asset(this, "LogRouterFilters", AssetProps.builder()
+                .path(classpathFile(LOG_ROUTER_FILTERS))
+                .build());
+        filters.grantRead(this.taskDefinition.getTaskRole());
+
+        Map<String, String> environment = new HashMap<>();
+        environment.put("aws_fluent_bit_init_s3_1", filters.getS3ObjectArn());
+        environment.put("LOG_EXCLUDE_PATTERN", logging.excludePattern());
+        environment.put("LOG_THROTTLE_RATE", String.valueOf(logging.throttleRate()));
+        environment.put("LOG_THROTTLE_WINDOW", String.valueOf(logging.throttleWindow()));
+
+        this.taskDefinition.addFirelensLogRouter("LogRouter", FirelensLogRouterDefinitionOptions.builder()
+                .image(this.publicImage(logging.logRouterImage(), props))
+                .containerName("logRouter")
+                .firelensConfig(FirelensConfig.builder()
+                        .type(FirelensLogRouterType.FLUENTBIT)
+                        .build())
+                .environment(environment)
+                .memoryReservationMiB(LoggingSettings.LOG_ROUTER_MEMORY_MIB)
+                .logging(new AwsLogDriver(AwsLogDriverProps.builder()
+                        .logGroup(logGroup)
+                        .streamPrefix("LogRouter")
+                        .mode(AwsLogDriverMode.NON_BLOCKING)
+                        .maxBufferSize(Size.mebibytes(logging.bufferSizeMiB()))
+                        .build()))
+                .build());
+    }
+
+    /**
+     * Sidecar image from public.ecr.aws, served by the pull-through cache of EcrStack when mirroring is enabled.
+     * The execution role may then import the image and create its repository on the first pull.
+     * Tasks on private networking have no internet access, so they can only pull sidecars through that cache
+     * or from a private ECR repository.
+     */
+    private ContainerImage publicImage(String image, FargateMicroserviceProps props) {
+        boolean mirrored = props.mirrorPublicImages() && image.startsWith(PUBLIC_REGISTRY);
+        if (props.privateNetworking() && !mirrored && !image.matches("\\d{12}\\.dkr\\.ecr\\..+")) {
+            throw new IllegalArgumentException("Sidecar image " + image + " cannot be pulled with network.privateNetworking; "
+                    + "enable ecr.mirrorPublicImages or use an image from a private ECR repository");
+        }
+        if (!mirrored) {
+            return ContainerImage.fromRegistry(image);
+        }
+        Stack stack = Stack.of(this);
+        IRole executionRole = this.taskDefinition.obtainExecutionRole();
+        executionRole.addToPrincipalPolicy(PolicyStatement.Builder.create()
+                .actions(List.of("ecr:BatchGetImage", "ecr:GetDownloadUrlForLayer",
+                        "ecr:BatchImportUpstreamImage", "ecr:CreateRepository"))
+                .resources(Collections.singletonList(stack.formatArn(ArnComponents.builder()
+                        .service("ecr")
+                        .resource("repository")
+                        .resourceName(EcrStack.PUBLIC_MIRROR_PREFIX + "/*")
+                        .build())))
+                .build());
+        executionRole.addToPrincipalPolicy(PolicyStatement.Builder.create()
+                .actions(Collections.singletonList("ecr:GetAuthorizationToken"))
+                .resources(Collections.singletonList("*"))
+                .build());
+        return ContainerImage.fromRegistry(stack.getAccount() + ".dkr.ecr." + stack.getRegion() + "."
+                + stack.getUrlSuffix() + "/" + EcrStack.PUBLIC_MIRROR_PREFIX + "/"
+                + image.substring(PUBLIC_REGISTRY.length()));
+    }
+
+    /**
+     * File system path of a classpath resource, so synthesis does not depend on the working directory.
+     * A resource inside a jar is copied to a temporary file first, since assets are read from disk.
+     */
+    private static String classpathFile(String resource) {
+        URL url = FargateMicroservice.class.getResource(resource);
+        if (url == null) {
+            throw new IllegalStateException("Resource " + resource + " is missing from the classpath");
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return Path.of(url.toURI()).toString();
+            }
+            Path copy = Files.createTempFile("asset", Path.of(resource).getFileName().toString());
+            copy.toFile().deleteOnExit();
+            try (InputStream content = url.openStream()) {
+                Files.copy(content, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return copy.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the resource " + resource, e);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Cannot locate the resource " + resource, e);
+        }
+    }
+
+    private LogDriver createLogDriver(LogGroup logGroup, String streamPrefix, LoggingSettings logging) {
+        if (!logging.fireLens()) {
+            return new AwsLogDriver(AwsLogDriverProps.builder()
+                    .logGroup(logGroup)
+                    .streamPrefix(streamPrefix)
+                    .mode(AwsLogDriverMode.NON_BLOCKING)
+                    .maxBufferSize(Size.mebibytes(logging.bufferSizeMiB()))
+                    .build());
+        }
+        logGroup.grantWrite(this.taskDefinition.getTaskRole());
+        Map<String, String> options = new HashMap<>();
+        options.put("Name", "cloudwatch_logs");
+        options.put("region", Stack.of(this).getRegion());
+        options.put("log_group_name", logGroup.getLogGroupName());
+        options.put("log_stream_prefix", streamPrefix + "/");
+        options.put("auto_create_group", "false");
+        // Records buffered by the container runtime while the log router is busy, instead of blocking stdout
+        options.put("log-driver-buffer-limit", String.valueOf(logging.bufferSizeMiB() * 1024 * 1024));
+        return LogDrivers.firelens(FireLensLogDriverProps.builder()
+                .options(options)
+                .build());
+    }
+
+    private void autoScaleService(ServiceScaling scaling) {
+        Duration scaleInCooldown = Duration.seconds(scaling.scaleInCooldownSeconds());
+        Duration scaleOutCooldown = Duration.seconds(scaling.scaleOutCooldownSeconds());
+
+        ScalableTaskCount scalableTaskCount = this.fargateService.autoScaleTaskCount(
+                software.amazon.awscdk.services.applicationautoscaling.EnableScalingProps.builder()
+                        .minCapacity(scaling.minTasks())
+                        .maxCapacity(scaling.maxTasks())
+                        .build());
+
+        scalableTaskCount.scaleOnCpuUtilization("CpuScaling", CpuUtilizationScalingProps.builder()
+                .targetUtilizationPercent(scaling.cpuTargetPercent())
+                .scaleInCooldown(scaleInCooldown)
+                .scaleOutCooldown(scaleOutCooldown)
+                .build());
+
+        scalableTaskCount.scaleOnMemoryUtilization("MemoryScaling", MemoryUtilizationScalingProps.builder()
+                .targetUtilizationPercent(scaling.memoryTargetPercent())
+                .scaleInCooldown(scaleInCooldown)
+                .scaleOutCooldown(scaleOutCooldown)
+                .build());
+
+        scalableTaskCount.scaleOnRequestCount("RequestCountScaling", RequestCountScalingProps.builder()
+                .requestsPerTarget(scaling.requestsPerTarget())
+                .targetGroup(this.targetGroup)
+                .scaleInCooldown(scaleInCooldown)
+                .scaleOutCooldown(scaleOutCooldown)
+                .build());
+
+        for (ServiceScaling.ScheduledScaling schedule : scaling.schedules()) {
+            scalableTaskCount.scaleOnSchedule(schedule.name(), ScalingSchedule.builder()
+                    .schedule(Schedule.expression("cron(" + schedule.cron() + ")"))
+                    .minCapacity(schedule.minTasks())
+                    .maxCapacity(schedule.maxTasks())
+                    .build());
+        }
+    }
+}
+
+record FargateMicroserviceProps(
+        MicroserviceSpec spec,
+        Cluster cluster,
+        Vpc vpc,
+        ApplicationListener applicationListener,
+        ApplicationTargetGroup albTargetGroup,
+        NetworkTargetGroup nlbTargetGroup,
+        ContainerImage image,
+        boolean privateNetworking,
+        boolean mirrorPublicImages
+){}
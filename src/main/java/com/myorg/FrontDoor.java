@@ -0,0 +1,20 @@
+package com.myorg;
+
+/**
+ * Selects how clients reach the products service.
+ * REST_NLB is the REST API with a VPC link to the NLB, HTTP_ALB is an HTTP API with a VPC link v2 straight
+ * to the ALB listener, and BOTH deploys the two side by side so their latency can be compared.
+ */
+enum FrontDoor {
+    REST_NLB,
+    HTTP_ALB,
+    BOTH;
+
+    boolean usesRestApi() {
+        return this != HTTP_ALB;
+    }
+
+    boolean usesHttpApi() {
+        return this != REST_NLB;
+    }
+}
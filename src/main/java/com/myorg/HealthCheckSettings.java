@@ -0,0 +1,52 @@
+package com.myorg;
+
+/**
+ * Health check timing shared by the container health check and the ALB/NLB target groups,
+ * plus the grace period during which the service ignores failing checks of a starting task.
+ * Without a containerCommand the container checks the health check path on its own port.
+ */
+record HealthCheckSettings(
+        String path,
+        String containerCommand,
+        int intervalSeconds,
+        int timeoutSeconds,
+        int healthyThreshold,
+        int unhealthyThreshold,
+        int startPeriodSeconds,
+        int gracePeriodSeconds
+) {
+    HealthCheckSettings {
+        if (intervalSeconds < 5 || intervalSeconds > 300) {
+            throw new IllegalArgumentException("Health check interval must be between 5 and 300 seconds, got " + intervalSeconds);
+        }
+        // ECS container health checks accept 2-60 seconds, the target groups a timeout shorter than the interval
+        if (timeoutSeconds < 2 || timeoutSeconds > 60 || timeoutSeconds >= intervalSeconds) {
+            throw new IllegalArgumentException("Health check timeout must be between 2 and 60 seconds and shorter than the interval, got " + timeoutSeconds);
+        }
+        if (healthyThreshold < 2 || healthyThreshold > 10 || unhealthyThreshold < 2 || unhealthyThreshold > 10) {
+            throw new IllegalArgumentException("Health check thresholds must be between 2 and 10");
+        }
+        if (startPeriodSeconds < 0 || startPeriodSeconds > 300) {
+            throw new IllegalArgumentException("Container start period must be between 0 and 300 seconds, got " + startPeriodSeconds);
+        }
+    }
+
+    static HealthCheckSettings fromContext(ContextConfig config, String prefix) {
+        String path = config.getString(prefix + ".path", "/actuator/health");
+        return new HealthCheckSettings(
+                path,
+                config.getString(prefix + ".containerCommand", ""),
+                config.getInt(prefix + ".intervalSeconds", 10),
+                config.getInt(prefix + ".timeoutSeconds", 5),
+                config.getInt(prefix + ".healthyThreshold", 2),
+                config.getInt(prefix + ".unhealthyThreshold", 2),
+                config.getInt(prefix + ".startPeriodSeconds", 60),
+                config.getInt(prefix + ".gracePeriodSeconds", 60));
+    }
+
+    String containerCommandFor(int containerPort) {
+        return containerCommand.isBlank()
+                ? "curl -fs http://localhost:" + containerPort + path + " || exit 1"
+                : containerCommand;
+    }
+}
@@ -0,0 +1,87 @@
+package com.myorg;
+
+import software.amazon.awscdk.CfnOutput;
+import software.amazon.awscdk.CfnOutputProps;
+import software.amazon.awscdk.Stack;
+import software.amazon.awscdk.StackProps;
+import software.amazon.awscdk.aws_apigatewayv2_integrations.HttpAlbIntegration;
+import software.amazon.awscdk.aws_apigatewayv2_integrations.HttpAlbIntegrationProps;
+import software.amazon.awscdk.services.apigatewayv2.*;
+import software.amazon.awscdk.services.ec2.SecurityGroup;
+import software.amazon.awscdk.services.ec2.SecurityGroupProps;
+import software.amazon.awscdk.services.ec2.Vpc;
+import software.amazon.awscdk.services.elasticloadbalancingv2.ApplicationListener;
+import software.constructs.Construct;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class HttpApiStack extends Stack {
+    private final HttpApi httpApi;
+
+    public HttpApiStack(final Construct scope, final String id,
+                        final StackProps props, HttpApiStackProps httpApiStackProps) {
+        super(scope, id, props);
+
+        SecurityGroup vpcLinkSecurityGroup = new SecurityGroup(this, "VpcLinkSecurityGroup",
+                SecurityGroupProps.builder()
+                        .vpc(httpApiStackProps.vpc())
+                        .description("ECommerce HTTP API VPC link")
+                        .allowAllOutbound(true)
+                        .build());
+
+        VpcLink vpcLink = new VpcLink(this, "VpcLink", VpcLinkProps.builder()
+                .vpcLinkName("ECommerceHttpVpcLink")
+                .vpc(httpApiStackProps.vpc())
+                .securityGroups(Collections.singletonList(vpcLinkSecurityGroup))
+                .build());
+
+        this.httpApi = new HttpApi(this, "HttpApi", HttpApiProps.builder()
+                .apiName("ECommerceHttpAPI")
+                .build());
+
+        this.createRoutes(httpApiStackProps.applicationListener(), vpcLink, httpApiStackProps.routes());
+
+        new CfnOutput(this, "HttpApiUrl", CfnOutputProps.builder()
+                .value(this.httpApi.getApiEndpoint())
+                .build());
+    }
+
+    private void createRoutes(ApplicationListener applicationListener, VpcLink vpcLink, List<ApiRoute> routes) {
+        Map<String, List<ApiRoute>> routesByPath = routes.stream()
+                .collect(Collectors.groupingBy(ApiRoute::path, LinkedHashMap::new, Collectors.toList()));
+
+        // One integration per path, e.g. /products/{id} -> /api/products/{id}
+        routesByPath.forEach((path, pathRoutes) -> {
+            HttpAlbIntegration integration = new HttpAlbIntegration(
+                    pathRoutes.get(0).cacheNamespace() + "-integration", applicationListener,
+                    HttpAlbIntegrationProps.builder()
+                            .vpcLink(vpcLink)
+                            .parameterMapping(new ParameterMapping()
+                                    .overwritePath(MappingValue.custom(pathRoutes.get(0).httpApiBackendPath()))
+                                    .appendHeader("requestId", MappingValue.contextVariable("requestId")))
+                            .build());
+
+            this.httpApi.addRoutes(AddRoutesOptions.builder()
+                    .path(path)
+                    .methods(pathRoutes.stream()
+                            .map(route -> HttpMethod.valueOf(route.method()))
+                            .toList())
+                    .integration(integration)
+                    .build());
+        });
+    }
+
+    public HttpApi getHttpApi() {
+        return httpApi;
+    }
+}
+
+record HttpApiStackProps(
+        Vpc vpc,
+        ApplicationListener applicationListener,
+        List<ApiRoute> routes
+){}
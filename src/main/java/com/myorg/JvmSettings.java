@@ -0,0 +1,68 @@
+package com.myorg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM tuning of a containerized Java service. The JAVA_TOOL_OPTIONS value is derived from the container
+ * size, so heap, processor count and collector follow the task size instead of container-detection defaults.
+ */
+record JvmSettings(
+        double maxRamPercentage,
+        String garbageCollector,
+        String cdsArchiveFile,
+        String extraOptions
+) {
+    private static final List<String> GARBAGE_COLLECTORS = List.of("AUTO", "SERIAL", "PARALLEL", "G1", "ZGC");
+
+    JvmSettings {
+        if (maxRamPercentage < 25 || maxRamPercentage > 90) {
+            throw new IllegalArgumentException("MaxRAMPercentage must be between 25 and 90, got " + maxRamPercentage);
+        }
+        if (!GARBAGE_COLLECTORS.contains(garbageCollector)) {
+            throw new IllegalArgumentException("Garbage collector must be one of " + GARBAGE_COLLECTORS + ", got " + garbageCollector);
+        }
+    }
+
+    static JvmSettings fromContext(ContextConfig config, String prefix) {
+        return new JvmSettings(
+                config.getDouble(prefix + ".maxRamPercentage", 75.0),
+                config.getString(prefix + ".garbageCollector", "AUTO").toUpperCase(),
+                config.getString(prefix + ".cdsArchiveFile", ""),
+                config.getString(prefix + ".extraOptions", ""));
+    }
+
+    String javaToolOptions(int containerCpu, int containerMemoryMiB) {
+        int processors = Math.max(1, (int) Math.ceil(containerCpu / 1024.0));
+
+        List<String> options = new ArrayList<>();
+        options.add("-XX:MaxRAMPercentage=" + maxRamPercentage);
+        options.add("-XX:InitialRAMPercentage=" + maxRamPercentage);
+        options.add("-XX:ActiveProcessorCount=" + processors);
+        options.add(garbageCollectorFlag(processors, containerMemoryMiB));
+        options.add("-XX:+ExitOnOutOfMemoryError");
+        if (!cdsArchiveFile.isBlank()) {
+            // Class data sharing archive baked into the image, e.g. with -XX:ArchiveClassesAtExit during the build
+            options.add("-XX:SharedArchiveFile=" + cdsArchiveFile);
+            options.add("-Xshare:auto");
+        }
+        if (!extraOptions.isBlank()) {
+            options.add(extraOptions.trim());
+        }
+        return String.join(" ", options);
+    }
+
+    private String garbageCollectorFlag(int processors, int containerMemoryMiB) {
+        String collector = garbageCollector;
+        if (collector.equals("AUTO")) {
+            // Same threshold as the JVM server-class ergonomics, made explicit so the choice is visible in the task definition
+            collector = processors >= 2 && containerMemoryMiB >= 1792 ? "G1" : "SERIAL";
+        }
+        return switch (collector) {
+            case "SERIAL" -> "-XX:+UseSerialGC";
+            case "PARALLEL" -> "-XX:+UseParallelGC";
+            case "ZGC" -> "-XX:+UseZGC";
+            default -> "-XX:+UseG1GC";
+        };
+    }
+}
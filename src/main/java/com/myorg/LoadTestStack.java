@@ -0,0 +1,189 @@
+package com.myorg;
+
+import software.amazon.awscdk.CfnOutput;
+import software.amazon.awscdk.CfnOutputProps;
+import software.amazon.awscdk.RemovalPolicy;
+import software.amazon.awscdk.Stack;
+import software.amazon.awscdk.StackProps;
+import software.amazon.awscdk.services.ec2.ISubnet;
+import software.amazon.awscdk.services.ec2.SecurityGroup;
+import software.amazon.awscdk.services.ec2.SecurityGroupProps;
+import software.amazon.awscdk.services.ec2.Vpc;
+import software.amazon.awscdk.services.ecs.AwsLogDriverProps;
+import software.amazon.awscdk.services.ecs.Cluster;
+import software.amazon.awscdk.services.ecs.ContainerDefinitionOptions;
+import software.amazon.awscdk.services.ecs.ContainerImage;
+import software.amazon.awscdk.services.ecs.FargateTaskDefinition;
+import software.amazon.awscdk.services.ecs.FargateTaskDefinitionProps;
+import software.amazon.awscdk.services.ecs.LogDriver;
+import software.amazon.awscdk.services.logs.FilterPattern;
+import software.amazon.awscdk.services.logs.LogGroup;
+import software.amazon.awscdk.services.logs.LogGroupProps;
+import software.amazon.awscdk.services.logs.MetricFilterOptions;
+import software.amazon.awscdk.services.logs.RetentionDays;
+import software.constructs.Construct;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * k6 load generator workers on the ECommerceCluster. The stack only defines the task family; a run is started
+ * with the command printed as the RunLoadTestCommand output, which launches one task per worker. Every worker
+ * sends its share of the configured request rate, logs a JSON summary when done, and metric filters turn the
+ * summaries into metrics in the ECommerce/LoadTest namespace.
+ */
+public class LoadTestStack extends Stack {
+    static final String METRIC_NAMESPACE = "ECommerce/LoadTest";
+    private static final String SCRIPT = "/k6/load-test.js";
+
+    private final FargateTaskDefinition taskDefinition;
+
+    public LoadTestStack(final Construct scope, final String id, final StackProps props, LoadTestStackProps loadTestStackProps) {
+        super(scope, id, props);
+        LoadTestSettings settings = loadTestStackProps.settings();
+
+        LogGroup logGroup = new LogGroup(this, "LogGroup", LogGroupProps.builder()
+                .logGroupName("ECommerceLoadTest")
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .retention(settings.retention())
+                .build());
+        this.addSummaryMetrics(logGroup);
+
+        this.taskDefinition = new FargateTaskDefinition(this, "TaskDefinition", FargateTaskDefinitionProps.builder()
+                .family("ecommerce-load-test")
+                .cpu(settings.taskCpu())
+                .memoryLimitMiB(settings.taskMemoryMiB())
+                .build());
+
+        // The image runs k6 directly, so the script is handed over in the environment and written out first
+        this.taskDefinition.addContainer("k6", ContainerDefinitionOptions.builder()
+                .containerName("k6")
+                .image(ContainerImage.fromRegistry(settings.image()))
+                .entryPoint(List.of("sh", "-c"))
+                .command(List.of("printf '%s' \"$K6_SCRIPT\" > /tmp/load-test.js && exec k6 run --quiet /tmp/load-test.js"))
+                .environment(Map.of(
+                        "K6_SCRIPT", readScript(),
+                        "TARGET_URL", loadTestStackProps.targetUrl(),
+                        "RPS", String.valueOf(settings.rps()),
+                        "WORKERS", String.valueOf(settings.workers()),
+                        "RAMP_UP", settings.rampUp(),
+                        "DURATION", settings.duration()))
+                .logging(LogDriver.awsLogs(AwsLogDriverProps.builder()
+                        .logGroup(logGroup)
+                        .streamPrefix("LoadTest")
+                        .build()))
+                .build());
+
+        SecurityGroup securityGroup = new SecurityGroup(this, "SecurityGroup", SecurityGroupProps.builder()
+                .vpc(loadTestStackProps.vpc())
+                .description("ECommerce load test workers")
+                .allowAllOutbound(true)
+                .build());
+
+        // Workers run in the public subnets: they pull the k6 image from Docker Hub and reach both the public
+        // API endpoint and the internal NLB from there
+        String subnets = loadTestStackProps.vpc().getPublicSubnets().stream()
+                .map(ISubnet::getSubnetId)
+                .collect(Collectors.joining(","));
+        new CfnOutput(this, "RunLoadTestCommand", CfnOutputProps.builder()
+                .value("aws ecs run-task --cluster " + loadTestStackProps.cluster().getClusterName()
+                        + " --task-definition " + this.taskDefinition.getFamily()
+                        + " --count " + settings.workers()
+                        + " --launch-type FARGATE"
+                        + " --network-configuration \"awsvpcConfiguration={subnets=[" + subnets + "],securityGroups=["
+                        + securityGroup.getSecurityGroupId() + "],assignPublicIp=ENABLED}\"")
+                .build());
+    }
+
+    private void addSummaryMetrics(LogGroup logGroup) {
+        Map<String, String> metrics = Map.of(
+                "RequestsPerSecond", "$.requestsPerSecond",
+                "P95LatencyMillis", "$.p95Millis",
+                "P99LatencyMillis", "$.p99Millis",
+                "FailedRequestRate", "$.failedRequestRate");
+        metrics.forEach((metricName, metricValue) -> logGroup.addMetricFilter(metricName + "Filter",
+                MetricFilterOptions.builder()
+                        .filterPattern(FilterPattern.booleanValue("$.loadTestSummary", true))
+                        .metricNamespace(METRIC_NAMESPACE)
+                        .metricName(metricName)
+                        .metricValue(metricValue)
+                        .build()));
+    }
+
+    /**
+     * Reads the script from the classpath, so synthesis does not depend on the working directory.
+     */
+    private static String readScript() {
+        try (InputStream script = LoadTestStack.class.getResourceAsStream(SCRIPT)) {
+            if (script == null) {
+                throw new IllegalStateException("Load test script " + SCRIPT + " is missing from the classpath");
+            }
+            return new String(script.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the load test script " + SCRIPT, e);
+        }
+    }
+
+    public FargateTaskDefinition getTaskDefinition() {
+        return taskDefinition;
+    }
+}
+
+record LoadTestStackProps(
+        Vpc vpc,
+        Cluster cluster,
+        String targetUrl,
+        LoadTestSettings settings
+) {}
+
+/**
+ * Load test run: workers tasks share rps requests per second between them, ramping up over rampUp and then
+ * holding the rate for duration (k6 durations such as 30s, 5m or 1h). One run-task call starts at most 10 tasks.
+ */
+record LoadTestSettings(
+        boolean enabled,
+        LoadTestTarget target,
+        int workers,
+        int rps,
+        String rampUp,
+        String duration,
+        String image,
+        int taskCpu,
+        int taskMemoryMiB,
+        RetentionDays retention
+) {
+    LoadTestSettings {
+        if (workers < 1 || workers > 10) {
+            throw new IllegalArgumentException("Load test workers must be between 1 and 10, got " + workers);
+        }
+        if (rps < workers) {
+            throw new IllegalArgumentException("Load test rate must be at least one request per second per worker, got " + rps);
+        }
+        if (!rampUp.matches("\\d+[smh]") || !duration.matches("\\d+[smh]")) {
+            throw new IllegalArgumentException("Load test ramp-up and duration must look like 30s, 5m or 1h, got "
+                    + rampUp + " and " + duration);
+        }
+        if (!PerformanceGuardrails.isPinned(image)) {
+            throw new IllegalArgumentException("Load test image must be pinned to a version, got " + image);
+        }
+    }
+
+    static LoadTestSettings fromContext(ContextConfig config) {
+        return new LoadTestSettings(
+                config.getBoolean("loadTest.enabled", false),
+                config.getEnum("loadTest.target", LoadTestTarget.class, LoadTestTarget.API),
+                config.getInt("loadTest.workers", 4),
+                config.getInt("loadTest.rps", 400),
+                config.getString("loadTest.rampUp", "1m"),
+                config.getString("loadTest.duration", "5m"),
+                config.getString("loadTest.image", "grafana/k6:0.57.0"),
+                config.getInt("loadTest.taskCpu", 1024),
+                config.getInt("loadTest.taskMemoryMiB", 2048),
+                config.getEnum("loadTest.retention", RetentionDays.class, RetentionDays.ONE_MONTH));
+    }
+}
@@ -0,0 +1,10 @@
+package com.myorg;
+
+/**
+ * Endpoint the load test workers send their requests to. API goes through the public REST API stage, including
+ * its throttling and cache, NLB goes straight to the internal NLB and measures the services without the API.
+ */
+enum LoadTestTarget {
+    API,
+    NLB
+}
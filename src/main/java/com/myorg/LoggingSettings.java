@@ -0,0 +1,66 @@
+package com.myorg;
+
+import software.amazon.awscdk.services.logs.RetentionDays;
+
+/**
+ * Log delivery of a Fargate service. AWSLOGS writes straight to CloudWatch Logs in non-blocking mode, so a slow
+ * log stream drops lines from the buffer instead of stalling the application. FIRELENS adds a Fluent Bit log router
+ * sidecar that batches records, drops lines matching excludePattern (debug and health check noise) and throttles
+ * each task to throttleRate records per second averaged over throttleWindow seconds. The log router image is pinned
+ * to a versioned init tag, so a task restart never pulls a different Fluent Bit.
+ * The service log groups keep their entries for the retention period, e.g. ONE_WEEK or THREE_MONTHS.
+ */
+record LoggingSettings(
+        String driver,
+        int bufferSizeMiB,
+        String excludePattern,
+        int throttleRate,
+        int throttleWindow,
+        String logRouterImage,
+        RetentionDays retention
+) {
+    // Memory reserved for the log router sidecar when FIRELENS is used
+    static final int LOG_ROUTER_MEMORY_MIB = 64;
+    // log-driver-buffer-limit of the FireLens driver takes at most 536870911 bytes
+    static final int MAX_BUFFER_SIZE_MIB = 511;
+
+    LoggingSettings {
+        if (!driver.equals("AWSLOGS") && !driver.equals("FIRELENS")) {
+            throw new IllegalArgumentException("Log driver must be AWSLOGS or FIRELENS, got " + driver);
+        }
+        if (bufferSizeMiB < 1 || bufferSizeMiB > MAX_BUFFER_SIZE_MIB) {
+            throw new IllegalArgumentException("Log buffer size must be between 1 and " + MAX_BUFFER_SIZE_MIB
+                    + " MiB, got " + bufferSizeMiB);
+        }
+        if (!logRouterImage.matches(".+:init-[^/:]+") || !PerformanceGuardrails.isPinned(logRouterImage)) {
+            throw new IllegalArgumentException("Log router image must be pinned to a versioned init tag such as "
+                    + "init-2.32.4, got " + logRouterImage);
+        }
+        if (excludePattern.isBlank()) {
+            throw new IllegalArgumentException("Log exclude pattern must not be blank");
+        }
+        if (throttleRate < 1 || throttleWindow < 1) {
+            throw new IllegalArgumentException("Log throttle rate and window must be positive");
+        }
+    }
+
+    static LoggingSettings fromContext(ContextConfig config, String prefix) {
+        return new LoggingSettings(
+                config.getString(prefix + ".driver", "AWSLOGS").toUpperCase(),
+                config.getInt(prefix + ".bufferSizeMiB", 25),
+                config.getString(prefix + ".excludePattern", "\\b(DEBUG|TRACE)\\b|/actuator/health"),
+                config.getInt(prefix + ".throttleRate", 500),
+                config.getInt(prefix + ".throttleWindow", 5),
+                config.getString(prefix + ".logRouterImage",
+                        "public.ecr.aws/aws-observability/aws-for-fluent-bit:init-2.32.4"),
+                config.getEnum(prefix + ".retention", RetentionDays.class, RetentionDays.ONE_MONTH));
+    }
+
+    boolean fireLens() {
+        return driver.equals("FIRELENS");
+    }
+
+    int sidecarMemoryMiB() {
+        return fireLens() ? LOG_ROUTER_MEMORY_MIB : 0;
+    }
+}
@@ -0,0 +1,100 @@
+package com.myorg;
+
+import java.util.List;
+
+/**
+ * Everything that differs between the Fargate services of the ECommerceCluster: task and container size,
+ * compute, deployment, JVM, health checks, auto-scaling and the API routes the service answers.
+ * Every service is reached through the shared ALB listener by a path rule built from the backend paths
+ * of its routes, so adding a service needs neither a new load balancer nor a new listener port.
+ */
+record MicroserviceSpec(
+        String name,
+        String imageTag,
+        int listenerPriority,
+        int containerPort,
+        int taskCpu,
+        int taskMemoryMiB,
+        int containerCpu,
+        int containerMemoryMiB,
+        ServiceScaling scaling,
+        ServiceCompute compute,
+        ServiceDeployment deployment,
+        JvmSettings jvm,
+        HealthCheckSettings healthCheck,
+        LoggingSettings logging,
+        XRayDaemonSettings xray,
+        List<ApiRoute> routes
+) {
+    // An ALB rule accepts at most five path patterns
+    private static final int MAX_PATH_PATTERNS = 5;
+
+    MicroserviceSpec {
+        if (!name.matches("[A-Z][A-Za-z0-9]+")) {
+            throw new IllegalArgumentException("Service names must be PascalCase, got " + name);
+        }
+        if (!PerformanceGuardrails.isPinnedTag(imageTag)) {
+            throw new IllegalArgumentException(name + " image tag must be a fixed version, got '" + imageTag + "'");
+        }
+        if (listenerPriority < 1 || listenerPriority > 50000) {
+            throw new IllegalArgumentException("Listener rule priority must be between 1 and 50000, got " + listenerPriority);
+        }
+        if (containerCpu + xray.cpu() > taskCpu
+                || containerMemoryMiB + xray.memoryMiB() + logging.sidecarMemoryMiB() > taskMemoryMiB) {
+            throw new IllegalArgumentException(name + " container " + containerCpu + "/" + containerMemoryMiB
+                    + " plus the sidecars does not fit into the task " + taskCpu + "/" + taskMemoryMiB);
+        }
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException(name + " needs at least one API route");
+        }
+    }
+
+    static MicroserviceSpec fromContext(ContextConfig config, String prefix, String name, int listenerPriority,
+                                        List<ApiRoute> routes) {
+        return new MicroserviceSpec(
+                name,
+                config.getString(prefix + ".imageTag", "1.4.0"),
+                listenerPriority,
+                config.getInt(prefix + ".containerPort", 8080),
+                config.getInt(prefix + ".taskCpu", 512),
+                config.getInt(prefix + ".taskMemoryMiB", 1024),
+                config.getInt(prefix + ".containerCpu", 384),
+                config.getInt(prefix + ".containerMemoryMiB", 896),
+                ServiceScaling.fromContext(config, prefix + ".scaling"),
+                ServiceCompute.fromContext(config, prefix + ".compute"),
+                ServiceDeployment.fromContext(config, prefix + ".deployment"),
+                JvmSettings.fromContext(config, prefix + ".jvm"),
+                HealthCheckSettings.fromContext(config, prefix + ".healthCheck"),
+                LoggingSettings.fromContext(config, prefix + ".logging"),
+                XRayDaemonSettings.fromContext(config, prefix + ".xray"),
+                routes);
+    }
+
+    /**
+     * ALB path patterns of the service, e.g. /api/products and /api/products/*.
+     */
+    List<String> pathPatterns() {
+        List<String> pathPatterns = routes.stream()
+                .map(ApiRoute::backendPathPattern)
+                .distinct()
+                .toList();
+        if (pathPatterns.size() > MAX_PATH_PATTERNS) {
+            throw new IllegalArgumentException(name + " has more than " + MAX_PATH_PATTERNS + " backend paths: " + pathPatterns);
+        }
+        return pathPatterns;
+    }
+
+    /**
+     * Task definition family, e.g. "products-service" for ProductsService.
+     */
+    String family() {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1-$2").toLowerCase();
+    }
+
+    /**
+     * Name of the application container, e.g. "productsService" for ProductsService.
+     */
+    String containerName() {
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -1,22 +1,25 @@
 package com.myorg;
 
+import software.amazon.awscdk.Duration;
 import software.amazon.awscdk.Stack;
 import software.amazon.awscdk.StackProps;
 import software.amazon.awscdk.services.apigateway.VpcLink;
 import software.amazon.awscdk.services.apigateway.VpcLinkProps;
 import software.amazon.awscdk.services.ec2.Vpc;
-import software.amazon.awscdk.services.elasticloadbalancingv2.ApplicationLoadBalancer;
-import software.amazon.awscdk.services.elasticloadbalancingv2.ApplicationLoadBalancerProps;
-import software.amazon.awscdk.services.elasticloadbalancingv2.NetworkLoadBalancer;
-import software.amazon.awscdk.services.elasticloadbalancingv2.NetworkLoadBalancerProps;
+import software.amazon.awscdk.services.elasticloadbalancingv2.*;
 import software.constructs.Construct;
 
 import java.util.Collections;
 
 public class NlbStack extends Stack {
+    static final int LISTENER_PORT = 8080;
+
     private final VpcLink vpcLink;
     private final NetworkLoadBalancer networkLoadBalancer;
     private final ApplicationLoadBalancer applicationLoadBalancer;
+    private final ApplicationListener applicationListener;
+    private final NetworkTargetGroup nlbTargetGroup;
+    private final ApplicationTargetGroup productsServiceAlbTargetGroup;
 
     public NlbStack(final Construct scope, final String id, final StackProps props, NlbStackProps nlbStackProps) {
         super(scope, id, props);
@@ -25,6 +28,7 @@ public class NlbStack extends Stack {
                 NetworkLoadBalancerProps.builder()
                         .loadBalancerName("ECommerceNlb")
                         .internetFacing(false)
+                        .crossZoneEnabled(nlbStackProps.loadBalancerSettings().nlbCrossZone())
                         .vpc(nlbStackProps.vpc())
                         .build());
 
@@ -37,9 +41,62 @@ public class NlbStack extends Stack {
                 ApplicationLoadBalancerProps.builder()
                         .loadBalancerName("ECommerceAlb")
                         .internetFacing(false)
+                        .idleTimeout(Duration.seconds(nlbStackProps.loadBalancerSettings().albIdleTimeoutSeconds()))
+                        .http2Enabled(nlbStackProps.loadBalancerSettings().albHttp2())
                         .vpc(nlbStackProps.vpc())
                         .build());
 
+        // Shared by all services: each one adds a path rule, unmatched paths get a 404 from the ALB itself.
+        // Both listeners keep the ids of the products service listeners they replace, so an update modifies
+        // them in place instead of creating a second listener on the same port
+        this.applicationListener = this.applicationLoadBalancer.addListener("ProductsServiceAlbListener",
+                BaseApplicationListenerProps.builder()
+                        .port(LISTENER_PORT)
+                        .protocol(ApplicationProtocol.HTTP)
+                        .defaultAction(ListenerAction.fixedResponse(404, FixedResponseOptions.builder()
+                                .contentType("application/json")
+                                .messageBody("{\"message\":\"Not Found\"}")
+                                .build()))
+                        .build());
+
+        // The products service keeps both of its target groups in this stack, under the ids they had before the
+        // listener was shared. The service registers its tasks into them, as other services do with their own
+        // target groups behind path rules
+        MicroserviceSpec productsServiceSpec = nlbStackProps.productsServiceSpec();
+        this.productsServiceAlbTargetGroup = new ApplicationTargetGroup(this.applicationListener,
+                "ProductsServiceAlbTargetGroup",
+                FargateMicroservice.albTargetGroupProps(productsServiceSpec, nlbStackProps.vpc()));
+
+        // The REST API reaches the NLB through its VPC link, and the NLB forwards straight to the products
+        // service tasks. An NLB cannot route by path, so services added later are only reachable through
+        // the ALB listener
+        NetworkListener networkListener = this.networkLoadBalancer.addListener("ProductsServiceNlbListener",
+                BaseNetworkListenerProps.builder()
+                        .port(LISTENER_PORT)
+                        .protocol(Protocol.TCP)
+                        .build());
+
+        LoadBalancerSettings settings = nlbStackProps.loadBalancerSettings();
+        this.nlbTargetGroup = new NetworkTargetGroup(networkListener, "ProductsServiceNlbTargetGroup",
+                NetworkTargetGroupProps.builder()
+                        .targetGroupName(productsServiceSpec.containerName() + "Nlb")
+                        .vpc(nlbStackProps.vpc())
+                        .targetType(TargetType.IP)
+                        .port(productsServiceSpec.containerPort())
+                        .protocol(Protocol.TCP)
+                        .deregistrationDelay(Duration.seconds(settings.nlbDeregistrationDelaySeconds()))
+                        .connectionTermination(settings.nlbConnectionTermination())
+                        .preserveClientIp(settings.nlbPreserveClientIp())
+                        .healthCheck(HealthCheck.builder()
+                                .enabled(true)
+                                .protocol(Protocol.HTTP)
+                                .path(productsServiceSpec.healthCheck().path())
+                                .interval(Duration.seconds(settings.nlbHealthCheckIntervalSeconds()))
+                                .healthyThresholdCount(settings.nlbHealthyThreshold())
+                                .unhealthyThresholdCount(settings.nlbUnhealthyThreshold())
+                                .build())
+                        .build());
+        networkListener.addTargetGroups("ProductsServiceNlbTarget", this.nlbTargetGroup);
     }
 
     public VpcLink getVpcLink() {
@@ -53,6 +110,66 @@ public class NlbStack extends Stack {
     public ApplicationLoadBalancer getApplicationLoadBalancer() {
         return applicationLoadBalancer;
     }
+
+    public ApplicationListener getApplicationListener() {
+        return applicationListener;
+    }
+
+    public NetworkTargetGroup getNlbTargetGroup() {
+        return nlbTargetGroup;
+    }
+
+    public ApplicationTargetGroup getProductsServiceAlbTargetGroup() {
+        return productsServiceAlbTargetGroup;
+    }
 }
 
-record NlbStackProps(Vpc vpc) {}
+record NlbStackProps(Vpc vpc, LoadBalancerSettings loadBalancerSettings, MicroserviceSpec productsServiceSpec) {}
+
+/**
+ * Data plane settings of the shared load balancers. Cross-zone spreads NLB traffic evenly over the products service
+ * tasks of all zones, the idle timeout bounds keep-alive connections on the ALB, and the NLB target group drains and
+ * detects tasks faster than the AWS defaults of 300s deregistration delay and 30s health check interval.
+ * Connection termination closes connections still open to a deregistered task once the delay is over, so a scale-in
+ * never waits for idle keep-alive connections. Client IP preservation passes the caller's address to the task
+ * instead of the NLB's, which needs the task security group to admit the callers.
+ */
+record LoadBalancerSettings(
+        boolean nlbCrossZone,
+        int albIdleTimeoutSeconds,
+        boolean albHttp2,
+        int nlbDeregistrationDelaySeconds,
+        boolean nlbConnectionTermination,
+        boolean nlbPreserveClientIp,
+        int nlbHealthCheckIntervalSeconds,
+        int nlbHealthyThreshold,
+        int nlbUnhealthyThreshold
+) {
+    LoadBalancerSettings {
+        if (albIdleTimeoutSeconds < 1 || albIdleTimeoutSeconds > 4000) {
+            throw new IllegalArgumentException("ALB idle timeout must be between 1 and 4000 seconds, got " + albIdleTimeoutSeconds);
+        }
+        if (nlbDeregistrationDelaySeconds < 0 || nlbDeregistrationDelaySeconds > 3600) {
+            throw new IllegalArgumentException("NLB deregistration delay must be between 0 and 3600 seconds, got " + nlbDeregistrationDelaySeconds);
+        }
+        if (nlbHealthCheckIntervalSeconds < 5 || nlbHealthCheckIntervalSeconds > 300) {
+            throw new IllegalArgumentException("NLB health check interval must be between 5 and 300 seconds, got " + nlbHealthCheckIntervalSeconds);
+        }
+        if (nlbHealthyThreshold < 2 || nlbHealthyThreshold > 10 || nlbUnhealthyThreshold < 2 || nlbUnhealthyThreshold > 10) {
+            throw new IllegalArgumentException("NLB health check thresholds must be between 2 and 10");
+        }
+    }
+
+    static LoadBalancerSettings fromContext(ContextConfig config) {
+        return new LoadBalancerSettings(
+                config.getBoolean("loadBalancer.nlbCrossZone", true),
+                config.getInt("loadBalancer.albIdleTimeoutSeconds", 60),
+                config.getBoolean("loadBalancer.albHttp2", true),
+                config.getInt("loadBalancer.nlbDeregistrationDelaySeconds", 15),
+                config.getBoolean("loadBalancer.nlbConnectionTermination", true),
+                config.getBoolean("loadBalancer.nlbPreserveClientIp", false),
+                config.getInt("loadBalancer.nlbHealthCheckIntervalSeconds", 10),
+                config.getInt("loadBalancer.nlbHealthyThreshold", 2),
+                config.getInt("loadBalancer.nlbUnhealthyThreshold", 2));
+    }
+}
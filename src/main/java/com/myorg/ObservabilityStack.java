@@ -0,0 +1,286 @@
+package com.myorg;
+
+import software.amazon.awscdk.ArnComponents;
+import software.amazon.awscdk.ArnFormat;
+import software.amazon.awscdk.Duration;
+import software.amazon.awscdk.Stack;
+import software.amazon.awscdk.StackProps;
+import software.amazon.awscdk.services.apigateway.RestApi;
+import software.amazon.awscdk.services.cloudwatch.*;
+import software.amazon.awscdk.services.cloudwatch.actions.SnsAction;
+import software.amazon.awscdk.services.dynamodb.ITable;
+import software.amazon.awscdk.services.ecs.FargateService;
+import software.amazon.awscdk.services.elasticloadbalancingv2.ApplicationLoadBalancer;
+import software.amazon.awscdk.services.elasticloadbalancingv2.ApplicationTargetGroup;
+import software.amazon.awscdk.services.elasticloadbalancingv2.NetworkLoadBalancer;
+import software.amazon.awscdk.services.elasticloadbalancingv2.NetworkTargetGroup;
+import software.amazon.awscdk.services.sns.Topic;
+import software.amazon.awscdk.services.sns.TopicProps;
+import software.amazon.awscdk.services.sns.subscriptions.EmailSubscription;
+import software.amazon.awscdk.services.xray.CfnSamplingRule;
+import software.amazon.awscdk.services.xray.CfnSamplingRuleProps;
+import software.constructs.Construct;
+
+import java.util.List;
+
+public class ObservabilityStack extends Stack {
+    private static final Duration PERIOD = Duration.minutes(1);
+
+    private final Topic alarmTopic;
+
+    public ObservabilityStack(final Construct scope, final String id,
+                              final StackProps props, ObservabilityStackProps observabilityStackProps) {
+        super(scope, id, props);
+
+        this.alarmTopic = new Topic(this, "AlarmTopic", TopicProps.builder()
+                .topicName("ECommerceAlarms")
+                .build());
+        AlarmSettings alarmSettings = observabilityStackProps.alarmSettings();
+        if (!alarmSettings.email().isBlank()) {
+            this.alarmTopic.addSubscription(new EmailSubscription(alarmSettings.email()));
+        }
+
+        Dashboard dashboard = new Dashboard(this, "Dashboard", DashboardProps.builder()
+                .dashboardName(observabilityStackProps.placement().globalName("ECommerce-Performance"))
+                .defaultInterval(Duration.hours(3))
+                .build());
+
+        if (observabilityStackProps.restApi() != null) {
+            this.addApiWidgets(dashboard, observabilityStackProps.restApi(), alarmSettings);
+        }
+        this.addLoadBalancerWidgets(dashboard, observabilityStackProps, alarmSettings);
+        this.addServiceWidgets(dashboard, observabilityStackProps.fargateService(), alarmSettings);
+        this.addTableWidgets(dashboard, observabilityStackProps.productsDdb(), alarmSettings);
+        this.createSamplingRules(observabilityStackProps.tracingSettings(), observabilityStackProps.restApi(),
+                observabilityStackProps.serviceTracingName());
+    }
+
+    private void addApiWidgets(Dashboard dashboard, RestApi restApi, AlarmSettings alarmSettings) {
+        Metric latencyP99 = restApi.metricLatency(metricOptions("p99", "Latency p99"));
+
+        dashboard.addWidgets(
+                GraphWidget.Builder.create()
+                        .title("API Gateway latency (ms)")
+                        .left(List.of(
+                                restApi.metricLatency(metricOptions("p50", "Latency p50")),
+                                restApi.metricLatency(metricOptions("p90", "Latency p90")),
+                                latencyP99))
+                        .right(List.of(
+                                restApi.metricIntegrationLatency(metricOptions("p50", "IntegrationLatency p50")),
+                                restApi.metricIntegrationLatency(metricOptions("p99", "IntegrationLatency p99"))))
+                        .width(12)
+                        .build(),
+                GraphWidget.Builder.create()
+                        .title("API Gateway errors")
+                        .left(List.of(
+                                restApi.metricClientError(metricOptions("Sum", "4xx")),
+                                restApi.metricServerError(metricOptions("Sum", "5xx"))))
+                        .right(List.of(restApi.metricCount(metricOptions("Sum", "Requests"))))
+                        .width(12)
+                        .build());
+
+        this.createAlarm("ApiLatencyP99Alarm", latencyP99,
+                alarmSettings.apiLatencyP99Millis(), alarmSettings);
+        this.createAlarm("Api5xxAlarm", restApi.metricServerError(metricOptions("Sum", "5xx")),
+                alarmSettings.api5xxCount(), alarmSettings);
+    }
+
+    private void addLoadBalancerWidgets(Dashboard dashboard, ObservabilityStackProps props, AlarmSettings alarmSettings) {
+        ApplicationLoadBalancer alb = props.applicationLoadBalancer();
+        NetworkLoadBalancer nlb = props.networkLoadBalancer();
+        ApplicationTargetGroup albTargetGroup = props.albTargetGroup();
+        NetworkTargetGroup nlbTargetGroup = props.nlbTargetGroup();
+
+        Metric albResponseTimeP99 = albTargetGroup.getMetrics().targetResponseTime(metricOptions("p99", "ALB target p99"));
+        Metric albUnhealthyHosts = albTargetGroup.getMetrics().unhealthyHostCount(metricOptions("Maximum", "ALB unhealthy"));
+        Metric nlbUnhealthyHosts = nlbTargetGroup.getMetrics().unHealthyHostCount(metricOptions("Maximum", "NLB unhealthy"));
+
+        // NLBs do not publish a response time metric, so flow and reset counts stand in for the NLB hop
+        dashboard.addWidgets(
+                GraphWidget.Builder.create()
+                        .title("ALB target response time (s)")
+                        .left(List.of(
+                                alb.getMetrics().targetResponseTime(metricOptions("p50", "ALB p50")),
+                                albResponseTimeP99))
+                        .width(8)
+                        .build(),
+                GraphWidget.Builder.create()
+                        .title("NLB flows and resets")
+                        .left(List.of(
+                                nlb.getMetrics().newFlowCount(metricOptions("Sum", "New flows")),
+                                nlb.getMetrics().activeFlowCount(metricOptions("Average", "Active flows"))))
+                        .right(List.of(
+                                nlb.getMetrics().tcpTargetResetCount(metricOptions("Sum", "Target resets")),
+                                nlb.getMetrics().tcpElbResetCount(metricOptions("Sum", "NLB resets"))))
+                        .width(8)
+                        .build(),
+                GraphWidget.Builder.create()
+                        .title("Unhealthy targets")
+                        .left(List.of(albUnhealthyHosts, nlbUnhealthyHosts))
+                        .width(8)
+                        .build());
+
+        this.createAlarm("AlbTargetResponseTimeAlarm", albResponseTimeP99,
+                alarmSettings.albTargetResponseTimeP99Millis() / 1000.0, alarmSettings);
+        this.createAlarm("AlbUnhealthyHostsAlarm", albUnhealthyHosts,
+                alarmSettings.unhealthyHosts(), alarmSettings);
+        this.createAlarm("NlbUnhealthyHostsAlarm", nlbUnhealthyHosts,
+                alarmSettings.unhealthyHosts(), alarmSettings);
+    }
+
+    private void addServiceWidgets(Dashboard dashboard, FargateService service, AlarmSettings alarmSettings) {
+        Metric cpu = service.metricCpuUtilization(metricOptions("Average", "CPU"));
+        Metric memory = service.metricMemoryUtilization(metricOptions("Average", "Memory"));
+
+        dashboard.addWidgets(GraphWidget.Builder.create()
+                .title(service.getServiceName() + " CPU / memory (%)")
+                .left(List.of(cpu, memory))
+                .leftYAxis(YAxisProps.builder().min(0).max(100).build())
+                .width(24)
+                .build());
+
+        this.createAlarm("ServiceCpuAlarm", cpu, alarmSettings.serviceCpuPercent(), alarmSettings);
+        this.createAlarm("ServiceMemoryAlarm", memory, alarmSettings.serviceMemoryPercent(), alarmSettings);
+    }
+
+    private void addTableWidgets(Dashboard dashboard, ITable table, AlarmSettings alarmSettings) {
+        Metric readThrottles = table.metric("ReadThrottleEvents", metricOptions("Sum", "Read throttles"));
+        Metric writeThrottles = table.metric("WriteThrottleEvents", metricOptions("Sum", "Write throttles"));
+
+        dashboard.addWidgets(
+                GraphWidget.Builder.create()
+                        .title("products consumed capacity")
+                        .left(List.of(
+                                table.metricConsumedReadCapacityUnits(metricOptions("Sum", "Consumed RCU")),
+                                table.metricConsumedWriteCapacityUnits(metricOptions("Sum", "Consumed WCU"))))
+                        .width(12)
+                        .build(),
+                GraphWidget.Builder.create()
+                        .title("products throttled requests")
+                        .left(List.of(readThrottles, writeThrottles))
+                        .width(12)
+                        .build());
+
+        this.createAlarm("DdbReadThrottleAlarm", readThrottles, alarmSettings.ddbThrottledRequests(), alarmSettings);
+        this.createAlarm("DdbWriteThrottleAlarm", writeThrottles, alarmSettings.ddbThrottledRequests(), alarmSettings);
+    }
+
+    /**
+     * X-Ray sampling rules for the component that makes the sampling decision: the REST API stage when it traces,
+     * the service otherwise. The rules match only that stage or the service segments, so other workloads of the
+     * account keep their own rules. The catch-all rule is evaluated before the built-in Default rule
+     * (1 trace per second plus 5%), so the configured reservoir and rate apply to every request.
+     */
+    private void createSamplingRules(TracingSettings tracingSettings, RestApi restApi, String serviceTracingName) {
+        String serviceName = serviceTracingName;
+        String resourceArn = "*";
+        if (restApi != null && tracingSettings.apiTracing()) {
+            String stageName = restApi.getDeploymentStage().getStageName();
+            serviceName = restApi.getRestApiName() + "/" + stageName;
+            resourceArn = this.formatArn(ArnComponents.builder()
+                    .service("apigateway")
+                    .account("")
+                    .resource("/restapis")
+                    .resourceName(restApi.getRestApiId() + "/stages/" + stageName)
+                    .arnFormat(ArnFormat.SLASH_RESOURCE_NAME)
+                    .build());
+        }
+        for (TracingSettings.SamplingRule rule : tracingSettings.rules()) {
+            this.createSamplingRule(rule.name(), rule.priority(), rule.httpMethod(), rule.urlPath(),
+                    rule.reservoirSize(), rule.fixedRate(), serviceName, resourceArn);
+        }
+        this.createSamplingRule("ECommerceDefault", 9999, "*", "*",
+                tracingSettings.reservoirSize(), tracingSettings.fixedRate(), serviceName, resourceArn);
+    }
+
+    private void createSamplingRule(String name, int priority, String httpMethod, String urlPath,
+                                    int reservoirSize, double fixedRate, String serviceName, String resourceArn) {
+        new CfnSamplingRule(this, name + "SamplingRule", CfnSamplingRuleProps.builder()
+                .samplingRule(CfnSamplingRule.SamplingRuleProperty.builder()
+                        .ruleName(name)
+                        .priority(priority)
+                        .httpMethod(httpMethod)
+                        .urlPath(urlPath)
+                        .reservoirSize(reservoirSize)
+                        .fixedRate(fixedRate)
+                        .host("*")
+                        .serviceName(serviceName)
+                        .serviceType("*")
+                        .resourceArn(resourceArn)
+                        .version(1)
+                        .build())
+                .build());
+    }
+
+    private void createAlarm(String id, Metric metric, double threshold, AlarmSettings alarmSettings) {
+        Alarm alarm = metric.createAlarm(this, id, CreateAlarmOptions.builder()
+                .threshold(threshold)
+                .comparisonOperator(ComparisonOperator.GREATER_THAN_OR_EQUAL_TO_THRESHOLD)
+                .evaluationPeriods(alarmSettings.evaluationPeriods())
+                .datapointsToAlarm(alarmSettings.evaluationPeriods())
+                .treatMissingData(TreatMissingData.NOT_BREACHING)
+                .build());
+        alarm.addAlarmAction(new SnsAction(this.alarmTopic));
+    }
+
+    private static MetricOptions metricOptions(String statistic, String label) {
+        return MetricOptions.builder()
+                .statistic(statistic)
+                .label(label)
+                .period(PERIOD)
+                .build();
+    }
+
+    public Topic getAlarmTopic() {
+        return alarmTopic;
+    }
+}
+
+record ObservabilityStackProps(
+        RestApi restApi,
+        NetworkLoadBalancer networkLoadBalancer,
+        NetworkTargetGroup nlbTargetGroup,
+        ApplicationLoadBalancer applicationLoadBalancer,
+        ApplicationTargetGroup albTargetGroup,
+        FargateService fargateService,
+        String serviceTracingName,
+        ITable productsDdb,
+        AlarmSettings alarmSettings,
+        TracingSettings tracingSettings,
+        RegionPlacement placement
+){}
+
+/**
+ * Alarm thresholds of the performance dashboard. Every alarm fires after the metric breaches its threshold
+ * for evaluationPeriods consecutive minutes and notifies the ECommerceAlarms topic.
+ */
+record AlarmSettings(
+        int apiLatencyP99Millis,
+        int api5xxCount,
+        int albTargetResponseTimeP99Millis,
+        int unhealthyHosts,
+        int serviceCpuPercent,
+        int serviceMemoryPercent,
+        int ddbThrottledRequests,
+        int evaluationPeriods,
+        String email
+) {
+    AlarmSettings {
+        if (evaluationPeriods < 1) {
+            throw new IllegalArgumentException("Alarm evaluation periods must be positive, got " + evaluationPeriods);
+        }
+    }
+
+    static AlarmSettings fromContext(ContextConfig config) {
+        return new AlarmSettings(
+                config.getInt("observability.alarms.apiLatencyP99Millis", 1000),
+                config.getInt("observability.alarms.api5xxCount", 10),
+                config.getInt("observability.alarms.albTargetResponseTimeP99Millis", 500),
+                config.getInt("observability.alarms.unhealthyHosts", 1),
+                config.getInt("observability.alarms.serviceCpuPercent", 85),
+                config.getInt("observability.alarms.serviceMemoryPercent", 85),
+                config.getInt("observability.alarms.ddbThrottledRequests", 1),
+                config.getInt("observability.alarms.evaluationPeriods", 3),
+                config.getString("observability.alarms.email", ""));
+    }
+}
@@ -0,0 +1,191 @@
+package com.myorg;
+
+import software.amazon.awscdk.Annotations;
+import software.amazon.awscdk.IAspect;
+import software.amazon.awscdk.Stack;
+import software.amazon.awscdk.services.apigateway.CfnStage;
+import software.amazon.awscdk.services.applicationautoscaling.CfnScalableTarget;
+import software.amazon.awscdk.services.dynamodb.CfnTable;
+import software.amazon.awscdk.services.ecs.CfnService;
+import software.amazon.awscdk.services.ecs.CfnTaskDefinition;
+import software.amazon.awscdk.services.elasticloadbalancingv2.CfnTargetGroup;
+import software.constructs.IConstruct;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fails synthesis on known performance anti-patterns: provisioned tables without auto-scaling, services without
+ * a scalable task count, unpinned container images and REST API stages without throttling. Single-task services,
+ * public task IPs and slow target health checks are errors in the prod profile and warnings everywhere else.
+ * Runs once per stack, so every check sees all resources of the stack.
+ */
+final class PerformanceGuardrails implements IAspect {
+    // AWS defaults for target groups that leave interval or threshold unset
+    private static final int DEFAULT_HEALTH_CHECK_INTERVAL_SECONDS = 30;
+    private static final int DEFAULT_UNHEALTHY_THRESHOLD = 2;
+
+    private final Profile profile;
+    private final GuardrailSettings settings;
+
+    PerformanceGuardrails(Profile profile, GuardrailSettings settings) {
+        this.profile = profile;
+        this.settings = settings;
+    }
+
+    @Override
+    public void visit(IConstruct node) {
+        if (!(node instanceof Stack stack)) {
+            return;
+        }
+        for (IConstruct construct : stack.getNode().findAll()) {
+            if (construct instanceof CfnTable table) {
+                this.checkTable(table);
+            } else if (construct instanceof CfnService service) {
+                this.checkService(stack, service);
+            } else if (construct instanceof CfnTaskDefinition taskDefinition) {
+                this.checkImages(stack, taskDefinition);
+            } else if (construct instanceof CfnTargetGroup targetGroup) {
+                this.checkHealthCheck(targetGroup);
+            } else if (construct instanceof CfnStage stage) {
+                this.checkStageThrottling(stack, stage);
+            }
+        }
+    }
+
+    private void checkTable(CfnTable table) {
+        if ("PAY_PER_REQUEST".equals(table.getBillingMode())) {
+            return;
+        }
+        IConstruct tableConstruct = table.getNode().getScope();
+        if (tableConstruct == null
+                || tableConstruct.getNode().tryFindChild("ReadScaling") == null
+                || tableConstruct.getNode().tryFindChild("WriteScaling") == null) {
+            Annotations.of(table).addError("Provisioned table without read and write auto-scaling; "
+                    + "use PAY_PER_REQUEST or autoScaleReadCapacity/autoScaleWriteCapacity");
+        }
+    }
+
+    private void checkService(Stack stack, CfnService service) {
+        IConstruct serviceConstruct = service.getNode().getScope();
+        List<CfnScalableTarget> scalableTargets = serviceConstruct == null ? List.of() : serviceConstruct.getNode().findAll().stream()
+                .filter(CfnScalableTarget.class::isInstance)
+                .map(CfnScalableTarget.class::cast)
+                .toList();
+        if (scalableTargets.isEmpty()) {
+            Annotations.of(service).addError("ECS service without a scalable task count; call autoScaleTaskCount");
+        }
+        for (CfnScalableTarget scalableTarget : scalableTargets) {
+            if (scalableTarget.getMinCapacity().intValue() < settings.minTasks()) {
+                this.report(service, "min-tasks", "ECS service scales down to " + scalableTarget.getMinCapacity()
+                        + " task(s), fewer than " + settings.minTasks());
+            }
+        }
+
+        Object networkConfiguration = stack.resolve(service.getNetworkConfiguration());
+        if (networkConfiguration instanceof Map<?, ?> network
+                && network.get("awsvpcConfiguration") instanceof Map<?, ?> awsvpc
+                && "ENABLED".equals(awsvpc.get("assignPublicIp"))) {
+            this.report(service, "public-ip", "ECS tasks get public IPs; enable network.privateNetworking");
+        }
+    }
+
+    private void checkImages(Stack stack, CfnTaskDefinition taskDefinition) {
+        if (!(stack.resolve(taskDefinition.getContainerDefinitions()) instanceof List<?> containers)) {
+            return;
+        }
+        for (Object container : containers) {
+            if (!(container instanceof Map<?, ?> definition)) {
+                continue;
+            }
+            String image = imageReference(definition.get("image"));
+            if (image == null) {
+                continue;
+            }
+            if (!isPinned(image)) {
+                Annotations.of(taskDefinition).addError("Container image " + image + " is not pinned to a version");
+            }
+        }
+    }
+
+    /**
+     * Whether an image reference carries a tag or digest that always resolves to the same image. The rule is shared
+     * by the image settings and this guardrail: a missing tag or any tag containing "latest" (latest, init-latest,
+     * stable-latest) is a moving tag.
+     */
+    static boolean isPinned(String image) {
+        int tagSeparator = image.lastIndexOf(':');
+        return tagSeparator > image.lastIndexOf('/') && isPinnedTag(image.substring(tagSeparator + 1));
+    }
+
+    static boolean isPinnedTag(String tag) {
+        return !tag.isBlank() && !tag.contains("latest");
+    }
+
+    /**
+     * Literal part of an image that carries its tag: the image itself, or the last literal segment of an Fn::Join
+     * such as a sidecar mirrored into the account's registry. Images of ECR repositories in this app resolve to
+     * other intrinsic functions and always carry the configured tag, so they give null.
+     */
+    private static String imageReference(Object image) {
+        if (image instanceof String literal) {
+            return literal;
+        }
+        if (image instanceof Map<?, ?> intrinsic
+                && intrinsic.get("Fn::Join") instanceof List<?> join
+                && join.size() == 2
+                && join.get(1) instanceof List<?> parts
+                && !parts.isEmpty()
+                && parts.get(parts.size() - 1) instanceof String last) {
+            return last;
+        }
+        return null;
+    }
+
+    private void checkHealthCheck(CfnTargetGroup targetGroup) {
+        int interval = targetGroup.getHealthCheckIntervalSeconds() != null
+                ? targetGroup.getHealthCheckIntervalSeconds().intValue()
+                : DEFAULT_HEALTH_CHECK_INTERVAL_SECONDS;
+        int unhealthyThreshold = targetGroup.getUnhealthyThresholdCount() != null
+                ? targetGroup.getUnhealthyThresholdCount().intValue()
+                : DEFAULT_UNHEALTHY_THRESHOLD;
+        if (interval * unhealthyThreshold > settings.maxHealthCheckDetectionSeconds()) {
+            this.report(targetGroup, "health-check", "Target group needs " + interval * unhealthyThreshold
+                    + "s to take an unhealthy target out of rotation, more than "
+                    + settings.maxHealthCheckDetectionSeconds() + "s");
+        }
+    }
+
+    private void checkStageThrottling(Stack stack, CfnStage stage) {
+        boolean throttled = stack.resolve(stage.getMethodSettings()) instanceof List<?> methodSettings
+                && methodSettings.stream().anyMatch(setting -> setting instanceof Map<?, ?> values
+                        && "/*".equals(values.get("resourcePath"))
+                        && values.get("throttlingRateLimit") != null);
+        if (!throttled) {
+            Annotations.of(stage).addError("API stage without stage-wide throttling");
+        }
+    }
+
+    private void report(IConstruct construct, String check, String message) {
+        if (profile == Profile.PROD) {
+            Annotations.of(construct).addError(message);
+        } else {
+            Annotations.of(construct).addWarningV2("@ecommerce/guardrails:" + check, message);
+        }
+    }
+}
+
+/**
+ * Thresholds of the performance guardrails: the minimum task count of a service and the longest time a target
+ * group may take to detect an unhealthy target (interval times unhealthy threshold).
+ */
+record GuardrailSettings(
+        int minTasks,
+        int maxHealthCheckDetectionSeconds
+) {
+    static GuardrailSettings fromContext(ContextConfig config) {
+        return new GuardrailSettings(
+                config.getInt("guardrails.minTasks", 2),
+                config.getInt("guardrails.maxHealthCheckDetectionSeconds", 60));
+    }
+}
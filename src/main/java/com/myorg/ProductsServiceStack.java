@@ -1,173 +1,497 @@
 package com.myorg;
 
+import software.amazon.awscdk.ArnComponents;
+import software.amazon.awscdk.CfnResource;
 import software.amazon.awscdk.Duration;
 import software.amazon.awscdk.RemovalPolicy;
 import software.amazon.awscdk.Stack;
 import software.amazon.awscdk.StackProps;
+import software.amazon.awscdk.customresources.AwsCustomResource;
+import software.amazon.awscdk.customresources.AwsCustomResourcePolicy;
+import software.amazon.awscdk.customresources.AwsCustomResourceProps;
+import software.amazon.awscdk.customresources.AwsSdkCall;
+import software.amazon.awscdk.customresources.PhysicalResourceId;
+import software.amazon.awscdk.customresources.SdkCallsPolicyOptions;
+import software.amazon.awscdk.services.apigateway.JsonSchema;
+import software.amazon.awscdk.services.apigateway.JsonSchemaType;
+import software.amazon.awscdk.services.apigateway.JsonSchemaVersion;
+import software.amazon.awscdk.services.dax.CfnCluster;
+import software.amazon.awscdk.services.dax.CfnClusterProps;
+import software.amazon.awscdk.services.dax.CfnSubnetGroup;
+import software.amazon.awscdk.services.dax.CfnSubnetGroupProps;
 import software.amazon.awscdk.services.dynamodb.*;
-import software.amazon.awscdk.services.ec2.Peer;
+import software.amazon.awscdk.services.ec2.ISecurityGroup;
 import software.amazon.awscdk.services.ec2.Port;
+import software.amazon.awscdk.services.ec2.SecurityGroup;
+import software.amazon.awscdk.services.ec2.SecurityGroupProps;
+import software.amazon.awscdk.services.ec2.SubnetSelection;
+import software.amazon.awscdk.services.ec2.SubnetType;
 import software.amazon.awscdk.services.ec2.Vpc;
-import software.amazon.awscdk.services.ecr.Repository;
+import software.amazon.awscdk.services.ecr.IRepository;
 import software.amazon.awscdk.services.ecs.*;
-import software.amazon.awscdk.services.ecs.Protocol;
 import software.amazon.awscdk.services.elasticloadbalancingv2.*;
-import software.amazon.awscdk.services.elasticloadbalancingv2.HealthCheck;
-import software.amazon.awscdk.services.iam.ManagedPolicy;
-import software.amazon.awscdk.services.logs.LogGroup;
-import software.amazon.awscdk.services.logs.LogGroupProps;
-import software.amazon.awscdk.services.logs.RetentionDays;
+import software.amazon.awscdk.services.iam.IRole;
+import software.amazon.awscdk.services.iam.PolicyStatement;
+import software.amazon.awscdk.services.iam.Role;
+import software.amazon.awscdk.services.iam.RoleProps;
+import software.amazon.awscdk.services.iam.ServicePrincipal;
+import software.amazon.awscdk.services.pipes.CfnPipe;
+import software.amazon.awscdk.services.pipes.CfnPipeProps;
+import software.amazon.awscdk.services.sqs.DeadLetterQueue;
+import software.amazon.awscdk.services.sqs.IQueue;
+import software.amazon.awscdk.services.sqs.Queue;
+import software.amazon.awscdk.services.sqs.QueueProps;
 import software.constructs.Construct;
 
 import java.nio.channels.spi.AbstractSelectionKey;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 
 public class ProductsServiceStack extends Stack {
+    private static final String PRODUCTS_TABLE = "products";
+    static final Attribute PRODUCTS_KEY = Attribute.builder()
+            .name("id")
+            .type(AttributeType.STRING)
+            .build();
+    private static final int DAX_TLS_PORT = 9111;
+
+    // Body of POST /products and PUT /products/{id}, checked by API Gateway before a request reaches a task
+    static final JsonSchema PRODUCT_SCHEMA = JsonSchema.builder()
+            .schema(JsonSchemaVersion.DRAFT4)
+            .title("Product")
+            .type(JsonSchemaType.OBJECT)
+            .required(List.of("productName", "code", "price"))
+            .properties(Map.of(
+                    "productName", JsonSchema.builder().type(JsonSchemaType.STRING).minLength(1).maxLength(255).build(),
+                    "code", JsonSchema.builder().type(JsonSchemaType.STRING).minLength(1).maxLength(64).build(),
+                    "price", JsonSchema.builder().type(JsonSchemaType.NUMBER).minimum(0).build(),
+                    "model", JsonSchema.builder().type(JsonSchemaType.STRING).maxLength(255).build(),
+                    "productUrl", JsonSchema.builder().type(JsonSchemaType.STRING).pattern("^https?://").maxLength(2048).build()))
+            .build();
+
+    static final List<ApiRoute> API_ROUTES = List.of(
+            ApiRoute.get("/products", "/api/products"),
+            ApiRoute.write("POST", "/products", "/api/products", PRODUCT_SCHEMA),
+            ApiRoute.get("/products/{id}", "/api/products/{id}"),
+            ApiRoute.write("PUT", "/products/{id}", "/api/products/{id}", PRODUCT_SCHEMA),
+            ApiRoute.write("DELETE", "/products/{id}", "/api/products/{id}"));
+
+    private final ITable productsDdb;
+    private final FargateMicroservice productsService;
+
     public ProductsServiceStack(final Construct scope, final String id,
                     final StackProps props, ProductsServiceProps productsServiceProps) {
         super(scope, id, props);
 
-        Table productsDdb = new Table(this,"ProductsDdb",
-                TableProps.builder()
-                        .partitionKey(Attribute.builder()
-                                .name("id")
-                                .type(AttributeType.STRING)
+        ChangeStreamSettings changeStreamSettings = productsServiceProps.changeStreamSettings();
+        RegionPlacement placement = productsServiceProps.placement();
+        if (placement.primary()) {
+            this.productsDdb = this.createProductsDdb(productsServiceProps);
+        } else {
+            this.productsDdb = this.importProductsDdbReplica(productsServiceProps);
+        }
+
+        this.productsService = new FargateMicroservice(this, "ProductsService", new FargateMicroserviceProps(
+                productsServiceProps.serviceSpec(),
+                productsServiceProps.cluster(),
+                productsServiceProps.vpc(),
+                productsServiceProps.applicationListener(),
+                productsServiceProps.albTargetGroup(),
+                productsServiceProps.nlbTargetGroup(),
+                ContainerImage.fromEcrRepository(productsServiceProps.repository(),
+                        productsServiceProps.serviceSpec().imageTag()),
+                productsServiceProps.privateNetworking(),
+                productsServiceProps.mirrorPublicImages()));
+        // Logical ids the service and its X-Ray log group had before FargateMicroservice. Both keep their names,
+        // so new ids would make CloudFormation create a second resource of the same name instead of updating
+        ((CfnResource) productsService.getFargateService().getNode().getDefaultChild())
+                .overrideLogicalId("ProductsServiceDC973D0F");
+        ((CfnResource) productsService.getNode().findChild("XRayLogGroup").getNode().getDefaultChild())
+                .overrideLogicalId("XRayLogGroup0F7C4A58");
+        IRole taskRole = productsService.getTaskDefinition().getTaskRole();
+        ContainerDefinition container = productsService.getContainer();
+        ISecurityGroup serviceSecurityGroup = productsService.getSecurityGroup();
+
+        productsDdb.grantReadWriteData(taskRole);
+        container.addEnvironment("AWS_PRODUCTSDDB_NAME", productsDdb.getTableName());
+        for (TableIndex index : productsServiceProps.productsDdbIndexes()) {
+            container.addEnvironment(index.environmentVariable("AWS_PRODUCTSDDB_INDEX_"), index.name());
+        }
+
+        DaxSettings daxSettings = productsServiceProps.daxSettings();
+        if (daxSettings.enabled()) {
+            SecurityGroup daxSecurityGroup = new SecurityGroup(this, "DaxSecurityGroup", SecurityGroupProps.builder()
+                    .vpc(productsServiceProps.vpc())
+                    .description("products DAX cluster, reachable from the products service only")
+                    .allowAllOutbound(false)
+                    .build());
+            CfnCluster daxCluster = this.createDaxCluster(daxSettings, daxSecurityGroup, productsServiceProps.vpc());
+
+            taskRole.addToPrincipalPolicy(PolicyStatement.Builder.create()
+                    .actions(List.of("dax:GetItem", "dax:BatchGetItem", "dax:Query", "dax:Scan",
+                            "dax:PutItem", "dax:UpdateItem", "dax:DeleteItem", "dax:BatchWriteItem",
+                            "dax:ConditionCheckItem"))
+                    .resources(Collections.singletonList(daxCluster.getAttrArn()))
+                    .build());
+            container.addEnvironment("AWS_PRODUCTSDDB_DAX_ENDPOINT", daxCluster.getAttrClusterDiscoveryEndpointUrl());
+            daxSecurityGroup.addIngressRule(serviceSecurityGroup, Port.tcp(DAX_TLS_PORT), "products service");
+        }
+
+        CatalogCacheEndpoint catalogCache = productsServiceProps.catalogCache();
+        if (catalogCache != null) {
+            container.addEnvironment("CATALOG_CACHE_HOST", catalogCache.address());
+            container.addEnvironment("CATALOG_CACHE_PORT", catalogCache.port());
+            container.addEnvironment("CATALOG_CACHE_CLUSTER_MODE", String.valueOf(catalogCache.clusterMode()));
+            container.addEnvironment("CATALOG_CACHE_TLS", String.valueOf(catalogCache.tls()));
+            if (catalogCache.readerAddress() != null) {
+                container.addEnvironment("CATALOG_CACHE_READER_HOST", catalogCache.readerAddress());
+            }
+            // Remote rule: created in this stack so the cache stack does not depend on the service stack
+            catalogCache.securityGroup().addIngressRule(serviceSecurityGroup,
+                    Port.tcp(6379), "products service", true);
+        }
+
+        if (changeStreamSettings.enabled()) {
+            Queue productsEventsQueue = this.createChangePipeline(changeStreamSettings);
+            productsEventsQueue.grantConsumeMessages(taskRole);
+            container.addEnvironment("AWS_PRODUCTS_EVENTS_QUEUE_URL", productsEventsQueue.getQueueUrl());
+        }
+    }
+
+    public ITable getProductsDdb() {
+        return productsDdb;
+    }
+
+    public FargateService getFargateService() {
+        return productsService.getFargateService();
+    }
+
+    public ApplicationTargetGroup getAlbTargetGroup() {
+        return productsService.getTargetGroup();
+    }
+
+    /**
+     * Forwards the products table stream to the products-events.fifo queue through an EventBridge pipe.
+     * The service tasks consume the queue as competing consumers to invalidate or refresh cached entries
+     * and read models. Records of one product share a message group, so no consumer receives a change before
+     * the previous change of that product is processed, and a refresh never writes an older image over a newer one.
+     * Messages the service fails to process end up in products-events-dlq.fifo, records the pipe cannot deliver
+     * in the configured failure queue, which defaults to products-events-dlq.
+     */
+    private Queue createChangePipeline(ChangeStreamSettings changeStreamSettings) {
+        Queue productsEventsDlq = new Queue(this, "ProductsEventsDlq", QueueProps.builder()
+                .queueName("products-events-dlq")
+                .retentionPeriod(Duration.days(14))
+                .build());
+        // The dead-letter queue of a FIFO queue has to be a FIFO queue as well
+        Queue productsEventsFifoDlq = new Queue(this, "ProductsEventsFifoDlq", QueueProps.builder()
+                .queueName("products-events-dlq.fifo")
+                .fifo(true)
+                .retentionPeriod(Duration.days(14))
+                .build());
+
+        Queue productsEventsQueue = new Queue(this, "ProductsEventsQueue", QueueProps.builder()
+                .queueName("products-events.fifo")
+                .fifo(true)
+                .deadLetterQueue(DeadLetterQueue.builder()
+                        .queue(productsEventsFifoDlq)
+                        .maxReceiveCount(changeStreamSettings.maxReceiveCount())
+                        .build())
+                .build());
+
+        Role pipeRole = new Role(this, "ProductsEventsPipeRole", RoleProps.builder()
+                .assumedBy(new ServicePrincipal("pipes.amazonaws.com"))
+                .build());
+        IQueue pipeFailureQueue = changeStreamSettings.failureQueueArn().isBlank()
+                ? productsEventsDlq
+                : Queue.fromQueueArn(this, "ProductsEventsFailureQueue", changeStreamSettings.failureQueueArn());
+        this.productsDdb.grantStreamRead(pipeRole);
+        productsEventsQueue.grantSendMessages(pipeRole);
+        pipeFailureQueue.grantSendMessages(pipeRole);
+
+        CfnPipe pipe = new CfnPipe(this, "ProductsEventsPipe", CfnPipeProps.builder()
+                .name("products-events")
+                .roleArn(pipeRole.getRoleArn())
+                .source(this.productsDdb.getTableStreamArn())
+                .sourceParameters(CfnPipe.PipeSourceParametersProperty.builder()
+                        .dynamoDbStreamParameters(CfnPipe.PipeSourceDynamoDBStreamParametersProperty.builder()
+                                .startingPosition("LATEST")
+                                .batchSize(changeStreamSettings.batchSize())
+                                .maximumBatchingWindowInSeconds(changeStreamSettings.batchingWindowSeconds())
+                                .parallelizationFactor(changeStreamSettings.parallelizationFactor())
+                                .maximumRetryAttempts(changeStreamSettings.maximumRetryAttempts())
+                                .onPartialBatchItemFailure("AUTOMATIC_BISECT")
+                                .deadLetterConfig(CfnPipe.DeadLetterConfigProperty.builder()
+                                        .arn(pipeFailureQueue.getQueueArn())
+                                        .build())
                                 .build())
-                        .tableName("products")
-                        .removalPolicy(RemovalPolicy.DESTROY)
-                        .billingMode(BillingMode.PROVISIONED)
-                        .readCapacity(1)
-                        .writeCapacity(1)
-                        .build()
-                );
-
-        FargateTaskDefinition fargateTaskDefinition = new FargateTaskDefinition(this, "TaskDefinition", FargateTaskDefinitionProps.builder()
-                .family("products-service")
-                .cpu(512)
-                .memoryLimitMiB(1024)
+                        .build())
+                .target(productsEventsQueue.getQueueArn())
+                .targetParameters(CfnPipe.PipeTargetParametersProperty.builder()
+                        .sqsQueueParameters(CfnPipe.PipeTargetSqsQueueParametersProperty.builder()
+                                .messageGroupId("$.dynamodb.Keys.id.S")
+                                .messageDeduplicationId("$.eventID")
+                                .build())
+                        .build())
                 .build());
+        pipe.getNode().addDependency(pipeRole);
 
-        productsDdb.grantReadWriteData(fargateTaskDefinition.getTaskRole());
+        return productsEventsQueue;
+    }
 
-        AwsLogDriver logDriver = new AwsLogDriver(AwsLogDriverProps.builder()
-                .logGroup(new LogGroup(this, "LogGroup",
-                        LogGroupProps.builder()
-                                .logGroupName("ProductServiceLogs")
-                                .removalPolicy(RemovalPolicy.DESTROY)
-                                .retention(RetentionDays.ONE_MONTH)
-                                .build()))
-                .streamPrefix("ProductsServiceLog")
+    private CfnCluster createDaxCluster(DaxSettings daxSettings, SecurityGroup daxSecurityGroup, Vpc vpc) {
+        Role daxRole = new Role(this, "DaxRole", RoleProps.builder()
+                .assumedBy(new ServicePrincipal("dax.amazonaws.com"))
                 .build());
+        this.productsDdb.grantReadWriteData(daxRole);
 
-        Map<String, String> envVariables = new HashMap<>();
-        envVariables.put("SERVER_PORT", "8080");
-        envVariables.put("AWS_PRODUCTSDDB_NAME", productsDdb.getTableName());
-        envVariables.put("AWS_REGION", this.getRegion());
-        envVariables.put("AWS_XRAY_DAEMON_ADDRESS", "0.0.0.0:2000");
-        envVariables.put("AWS_XRAY_CONTEXT_MISSING", "IGNORE_ERROR");
-        envVariables.put("AWS_XRAY_TRACING_NAME", "productsservice");
-        envVariables.put("LOGGING_LEVEL_ROOT", "INFO");
-
-        fargateTaskDefinition.addContainer("ProductsServiceContainer",
-                ContainerDefinitionOptions.builder()
-                        .image(ContainerImage.fromEcrRepository(productsServiceProps.repository(), "1.4.0"))
-                        .containerName("productsService")
-                        .logging(logDriver)
-                        .portMappings(Collections.singletonList(PortMapping.builder()
-                                        .containerPort(8080)
-                                        .protocol(Protocol.TCP)
-                                        .build()))
-                        .environment(envVariables)
-                        .cpu(384)
-                        .memoryLimitMiB(896)
-                        .build());
-
-        fargateTaskDefinition.addContainer("xray", ContainerDefinitionOptions.builder()
-                .image(ContainerImage.fromRegistry("public.ecr.aws/xray/aws-xray-daemon:latest"))
-                .containerName("XRayProductsService")
-                .logging(new AwsLogDriver(AwsLogDriverProps.builder()
-                        .logGroup(new LogGroup(this, "XRayLogGroup", LogGroupProps.builder()
-                                .logGroupName("XRayProductsService")
-                                .removalPolicy(RemovalPolicy.DESTROY)
-                                .retention(RetentionDays.ONE_MONTH)
-                                .build()))
-                        .streamPrefix("XRayProductsService")
-                        .build()))
-                .portMappings(Collections.singletonList(PortMapping.builder()
-                        .containerPort(2000)
-                        .protocol(Protocol.UDP)
-                        .build()))
-                .cpu(128)
-                .memoryLimitMiB(128)
+        CfnSubnetGroup daxSubnetGroup = new CfnSubnetGroup(this, "DaxSubnetGroup", CfnSubnetGroupProps.builder()
+                .subnetGroupName("products-dax")
+                .description("ECommerceVPC isolated subnets")
+                .subnetIds(vpc.selectSubnets(SubnetSelection.builder()
+                        .subnetType(SubnetType.PRIVATE_ISOLATED)
+                        .build()).getSubnetIds())
                 .build());
-        fargateTaskDefinition.getTaskRole().addManagedPolicy(ManagedPolicy.fromAwsManagedPolicyName("AWSXrayWriteOnlyAccess"));
-
-        ApplicationListener applicationListener = productsServiceProps.applicationLoadBalancer()
-                .addListener("ProductsServiceAlbListener", ApplicationListenerProps.builder()
-                        .port(8080)
-                        .protocol(ApplicationProtocol.HTTP)
-                        .loadBalancer(productsServiceProps.applicationLoadBalancer())
-                        .build());
-
-        FargateService fargateService = new FargateService(this,"ProductsService", FargateServiceProps.builder()
-                .serviceName("ProductsService")
-                .cluster(productsServiceProps.cluster())
-                .taskDefinition(fargateTaskDefinition)
-                .desiredCount(2)
-                .assignPublicIp(true) // TODO: Change to false in production
+
+        CfnCluster daxCluster = new CfnCluster(this, "DaxCluster", CfnClusterProps.builder()
+                .clusterName("products-dax")
+                .iamRoleArn(daxRole.getRoleArn())
+                .nodeType(daxSettings.nodeType())
+                .replicationFactor(daxSettings.nodeCount())
+                .subnetGroupName(daxSubnetGroup.getRef())
+                .securityGroupIds(Collections.singletonList(daxSecurityGroup.getSecurityGroupId()))
+                .clusterEndpointEncryptionType("TLS")
+                .sseSpecification(CfnCluster.SSESpecificationProperty.builder()
+                        .sseEnabled(true)
+                        .build())
                 .build());
-        productsServiceProps.repository().grantPull(Objects.requireNonNull(fargateTaskDefinition.getExecutionRole()));
-        fargateService.getConnections().getSecurityGroups().get(0).addIngressRule(Peer.anyIpv4(), Port.tcp(8080));
-
-        applicationListener.addTargets("ProductsServiceAlbTarget",
-                AddApplicationTargetsProps.builder()
-                        .targetGroupName("productsServiceAlb")
-                        .port(8080)
-                        .protocol(ApplicationProtocol.HTTP)
-                        .targets(Collections.singletonList(fargateService))
-                        .deregistrationDelay(Duration.seconds(30))
-                        .healthCheck(HealthCheck.builder()
-                                .enabled(true)
-                                .interval(Duration.seconds(30))
-                                .timeout(Duration.seconds(10))
-                                .path("/actuator/health")
-                                .port("8080")
-                                .build())
+        // The role policy has to exist before DAX validates the role
+        daxCluster.getNode().addDependency(daxRole);
+        return daxCluster;
+    }
+
+    /**
+     * Creates the products table in the primary region. With more than one region it becomes a global table
+     * with a replica in every other region; replicas inherit the indexes.
+     */
+    private Table createProductsDdb(ProductsServiceProps productsServiceProps) {
+        RegionPlacement placement = productsServiceProps.placement();
+        TableCapacity productsDdbCapacity = productsServiceProps.productsDdbCapacity();
+        TableProps.Builder productsDdbProps = TableProps.builder()
+                .partitionKey(PRODUCTS_KEY)
+                .tableName(PRODUCTS_TABLE)
+                .removalPolicy(RemovalPolicy.DESTROY)
+                .billingMode(productsDdbCapacity.billingMode());
+        // Global tables replicate through the stream, so replicas need it even without the change pipeline
+        if (productsServiceProps.changeStreamSettings().enabled() || !placement.replicaRegions().isEmpty()) {
+            productsDdbProps.stream(StreamViewType.NEW_AND_OLD_IMAGES);
+        }
+        if (!placement.replicaRegions().isEmpty()) {
+            productsDdbProps.replicationRegions(placement.replicaRegions());
+        }
+        if (productsDdbCapacity.isProvisioned()) {
+            productsDdbProps
+                    .readCapacity(productsDdbCapacity.minReadCapacity())
+                    .writeCapacity(productsDdbCapacity.minWriteCapacity());
+        }
+        Table table = new Table(this,"ProductsDdb", productsDdbProps.build());
+        this.autoScaleTable(table, productsDdbCapacity);
+
+        for (TableIndex index : productsServiceProps.productsDdbIndexes()) {
+            this.addIndex(table, index);
+        }
+        return table;
+    }
+
+    /**
+     * References the local replica of the global products table in a non-primary region. The replica stream ARN
+     * is only known in that region, so it is looked up when the change pipeline needs it.
+     */
+    private ITable importProductsDdbReplica(ProductsServiceProps productsServiceProps) {
+        TableAttributes.Builder productsDdbAttributes = TableAttributes.builder()
+                .tableName(PRODUCTS_TABLE)
+                .globalIndexes(productsServiceProps.productsDdbIndexes().stream()
+                        .map(TableIndex::name)
+                        .toList());
+
+        if (productsServiceProps.changeStreamSettings().enabled()) {
+            AwsCustomResource replicaStream = new AwsCustomResource(this, "ProductsDdbReplicaStream",
+                    AwsCustomResourceProps.builder()
+                            .onUpdate(AwsSdkCall.builder()
+                                    .service("DynamoDB")
+                                    .action("describeTable")
+                                    .parameters(Map.of("TableName", PRODUCTS_TABLE))
+                                    .physicalResourceId(PhysicalResourceId.of(PRODUCTS_TABLE + "-replica-stream"))
+                                    .outputPaths(Collections.singletonList("Table.LatestStreamArn"))
+                                    .build())
+                            .policy(AwsCustomResourcePolicy.fromSdkCalls(SdkCallsPolicyOptions.builder()
+                                    .resources(Collections.singletonList(this.formatArn(ArnComponents.builder()
+                                            .service("dynamodb")
+                                            .resource("table")
+                                            .resourceName(PRODUCTS_TABLE)
+                                            .build())))
+                                    .build()))
+                            .build());
+            productsDdbAttributes.tableStreamArn(replicaStream.getResponseField("Table.LatestStreamArn"));
+        }
+        return Table.fromTableAttributes(this, "ProductsDdb", productsDdbAttributes.build());
+    }
+
+    private void addIndex(Table table, TableIndex index) {
+        GlobalSecondaryIndexProps.Builder indexProps = GlobalSecondaryIndexProps.builder()
+                .indexName(index.name())
+                .partitionKey(Attribute.builder()
+                        .name(index.partitionKey())
+                        .type(index.partitionKeyType())
+                        .build())
+                .projectionType(index.projection());
+        if (index.sortKey() != null) {
+            indexProps.sortKey(Attribute.builder()
+                    .name(index.sortKey())
+                    .type(index.sortKeyType())
                     .build());
+        }
+        if (index.projection() == ProjectionType.INCLUDE) {
+            indexProps.nonKeyAttributes(index.nonKeyAttributes());
+        }
+        if (index.capacity().isProvisioned()) {
+            indexProps
+                    .readCapacity(index.capacity().minReadCapacity())
+                    .writeCapacity(index.capacity().minWriteCapacity());
+        }
+        table.addGlobalSecondaryIndex(indexProps.build());
+        this.autoScaleIndex(table, index.name(), index.capacity());
+    }
 
-        NetworkListener networkListener = productsServiceProps.networkLoadBalancer()
-                .addListener("ProductsServiceNlbListener", BaseNetworkListenerProps.builder()
-                        .port(8080)
-                        .protocol(
-                                software.amazon.awscdk.services.elasticloadbalancingv2.Protocol.TCP
-                        )
-                        .build());
-
-        networkListener.addTargets("ProductsServiceNlbTarget",
-                AddNetworkTargetsProps.builder()
-                        .port(8080)
-                        .protocol(
-                                software.amazon.awscdk.services.elasticloadbalancingv2.Protocol.TCP
-                        )
-                        .targetGroupName("productsServiceNlb")
-                        .targets(Collections.singletonList(
-                                fargateService.loadBalancerTarget(LoadBalancerTargetOptions.builder()
-                                                .containerName("productsService")
-                                                .containerPort(8080)
-                                                .protocol(Protocol.TCP)
-                                        .build())
-                        ))
-                        .build());
+    private void autoScaleTable(Table table, TableCapacity capacity) {
+        if (!capacity.isProvisioned()) {
+            return;
+        }
+        UtilizationScalingProps utilizationScaling = UtilizationScalingProps.builder()
+                .targetUtilizationPercent(capacity.targetUtilizationPercent())
+                .build();
+
+        table.autoScaleReadCapacity(EnableScalingProps.builder()
+                        .minCapacity(capacity.minReadCapacity())
+                        .maxCapacity(capacity.maxReadCapacity())
+                        .build())
+                .scaleOnUtilization(utilizationScaling);
+
+        table.autoScaleWriteCapacity(EnableScalingProps.builder()
+                        .minCapacity(capacity.minWriteCapacity())
+                        .maxCapacity(capacity.maxWriteCapacity())
+                        .build())
+                .scaleOnUtilization(utilizationScaling);
+    }
+
+    private void autoScaleIndex(Table table, String indexName, TableCapacity capacity) {
+        if (!capacity.isProvisioned()) {
+            return;
+        }
+        UtilizationScalingProps utilizationScaling = UtilizationScalingProps.builder()
+                .targetUtilizationPercent(capacity.targetUtilizationPercent())
+                .build();
+
+        table.autoScaleGlobalSecondaryIndexReadCapacity(indexName, EnableScalingProps.builder()
+                        .minCapacity(capacity.minReadCapacity())
+                        .maxCapacity(capacity.maxReadCapacity())
+                        .build())
+                .scaleOnUtilization(utilizationScaling);
+
+        table.autoScaleGlobalSecondaryIndexWriteCapacity(indexName, EnableScalingProps.builder()
+                        .minCapacity(capacity.minWriteCapacity())
+                        .maxCapacity(capacity.maxWriteCapacity())
+                        .build())
+                .scaleOnUtilization(utilizationScaling);
     }
 }
 
 record ProductsServiceProps(
   Vpc vpc,
   Cluster cluster,
-  NetworkLoadBalancer networkLoadBalancer,
-  ApplicationLoadBalancer applicationLoadBalancer,
-  Repository repository
-){}
\ No newline at end of file
+  ApplicationListener applicationListener,
+  ApplicationTargetGroup albTargetGroup,
+  NetworkTargetGroup nlbTargetGroup,
+  IRepository repository,
+  MicroserviceSpec serviceSpec,
+  TableCapacity productsDdbCapacity,
+  List<TableIndex> productsDdbIndexes,
+  boolean privateNetworking,
+  boolean mirrorPublicImages,
+  DaxSettings daxSettings,
+  CatalogCacheEndpoint catalogCache,
+  ChangeStreamSettings changeStreamSettings,
+  RegionPlacement placement
+){}
+
+/**
+ * Optional DAX cluster in front of the products table. Its discovery endpoint is passed to the
+ * container as AWS_PRODUCTSDDB_DAX_ENDPOINT.
+ */
+record DaxSettings(
+  boolean enabled,
+  String nodeType,
+  int nodeCount
+) {
+  DaxSettings {
+    if (nodeCount < 1 || nodeCount > 10) {
+      throw new IllegalArgumentException("DAX node count must be between 1 and 10, got " + nodeCount);
+    }
+  }
+
+  static DaxSettings fromContext(ContextConfig config) {
+    return new DaxSettings(
+            config.getBoolean("productsDdb.dax.enabled", false),
+            config.getString("productsDdb.dax.nodeType", "dax.t3.small"),
+            config.getInt("productsDdb.dax.nodeCount", 2));
+  }
+}
+
+/**
+ * Change pipeline of the products table: the NEW_AND_OLD_IMAGES stream is read in batches by an
+ * EventBridge pipe and delivered to the products-events.fifo queue, in order per product. Records that still
+ * fail after maximumRetryAttempts go to the SQS queue failureQueueArn, or to products-events-dlq when none is set;
+ * queue messages move to products-events-dlq.fifo after maxReceiveCount failed receives.
+ */
+record ChangeStreamSettings(
+  boolean enabled,
+  int batchSize,
+  int batchingWindowSeconds,
+  int parallelizationFactor,
+  int maximumRetryAttempts,
+  String failureQueueArn,
+  int maxReceiveCount
+) {
+  ChangeStreamSettings {
+    if (batchSize < 1 || batchSize > 10000) {
+      throw new IllegalArgumentException("Stream batch size must be between 1 and 10000, got " + batchSize);
+    }
+    if (batchingWindowSeconds < 0 || batchingWindowSeconds > 300) {
+      throw new IllegalArgumentException("Stream batching window must be between 0 and 300 seconds, got " + batchingWindowSeconds);
+    }
+    if (parallelizationFactor < 1 || parallelizationFactor > 10) {
+      throw new IllegalArgumentException("Stream parallelization factor must be between 1 and 10, got " + parallelizationFactor);
+    }
+    if (maximumRetryAttempts < -1 || maximumRetryAttempts > 185) {
+      throw new IllegalArgumentException("Stream retry attempts must be between -1 (retry until the record expires) and 185, got " + maximumRetryAttempts);
+    }
+    if (!failureQueueArn.isBlank() && !failureQueueArn.matches("arn:aws[a-z-]*:sqs:[a-z0-9-]+:\\d{12}:[A-Za-z0-9_-]+(\\.fifo)?")) {
+      throw new IllegalArgumentException("Stream failure destination must be an SQS queue ARN, got " + failureQueueArn);
+    }
+    if (maxReceiveCount < 1 || maxReceiveCount > 1000) {
+      throw new IllegalArgumentException("Queue max receive count must be between 1 and 1000, got " + maxReceiveCount);
+    }
+  }
+
+  static ChangeStreamSettings fromContext(ContextConfig config) {
+    return new ChangeStreamSettings(
+            config.getBoolean("productsDdb.stream.enabled", false),
+            config.getInt("productsDdb.stream.batchSize", 100),
+            config.getInt("productsDdb.stream.batchingWindowSeconds", 1),
+            config.getInt("productsDdb.stream.parallelizationFactor", 2),
+            config.getInt("productsDdb.stream.maximumRetryAttempts", 3),
+            config.getString("productsDdb.stream.failureQueueArn", ""),
+            config.getInt("productsDdb.stream.maxReceiveCount", 5));
+  }
+}
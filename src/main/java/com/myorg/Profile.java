@@ -0,0 +1,28 @@
+package com.myorg;
+
+/**
+ * Deployment profile selected with the "profile" context key. Each profile names a block of context values in
+ * the "profiles" map of cdk.json; the settings records validate those values like any other context value.
+ */
+enum Profile {
+    DEV,
+    STAGING,
+    PROD,
+    LOAD_TEST;
+
+    /**
+     * Name used in cdk.json and on the command line, e.g. "load-test".
+     */
+    String contextName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    static Profile fromContextName(String name) {
+        for (Profile profile : values()) {
+            if (profile.contextName().equals(name.trim().toLowerCase())) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown profile '" + name + "', expected one of dev, staging, prod, load-test");
+    }
+}
@@ -0,0 +1,48 @@
+package com.myorg;
+
+import java.util.List;
+
+/**
+ * Position of one regional stack set in a multi-region deployment. The first configured region is the primary:
+ * it owns the ECR repository and the products table, and replicates both into the other regions.
+ * Stacks in the primary region keep their original ids, the others get the region as suffix.
+ */
+record RegionPlacement(String region, List<String> regions) {
+    RegionPlacement {
+        if (!regions.contains(region)) {
+            throw new IllegalArgumentException("Region " + region + " is not one of " + regions);
+        }
+    }
+
+    static List<String> regionsFromContext(ContextConfig config) {
+        List<String> regions = config.getStringList("regions", List.of("eu-north-1"));
+        if (regions.isEmpty() || regions.stream().distinct().count() != regions.size()) {
+            throw new IllegalArgumentException("Context value 'regions' must list distinct regions, got " + regions);
+        }
+        return regions;
+    }
+
+    boolean primary() {
+        return region.equals(regions.get(0));
+    }
+
+    String primaryRegion() {
+        return regions.get(0);
+    }
+
+    List<String> replicaRegions() {
+        return primary() ? regions.subList(1, regions.size()) : List.of();
+    }
+
+    String stackId(String baseId) {
+        return primary() ? baseId : baseId + "-" + region;
+    }
+
+    /**
+     * Name of an account-wide resource such as a managed policy or a dashboard, which every region creates
+     * on its own and therefore needs to be unique per region.
+     */
+    String globalName(String baseName) {
+        return primary() ? baseName : baseName + "-" + region;
+    }
+}
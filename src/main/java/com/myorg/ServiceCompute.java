@@ -0,0 +1,56 @@
+package com.myorg;
+
+import software.amazon.awscdk.services.ecs.CapacityProviderStrategy;
+import software.amazon.awscdk.services.ecs.CpuArchitecture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CPU architecture of a Fargate task and how its tasks are spread between FARGATE and FARGATE_SPOT.
+ * The first onDemandBase tasks always run on FARGATE, the rest are split by the two weights.
+ * ARM64 requires the service image to be published for linux/arm64.
+ */
+record ServiceCompute(
+        String cpuArchitecture,
+        int onDemandBase,
+        int onDemandWeight,
+        int spotWeight
+) {
+    ServiceCompute {
+        if (!cpuArchitecture.equals("X86_64") && !cpuArchitecture.equals("ARM64")) {
+            throw new IllegalArgumentException("CPU architecture must be X86_64 or ARM64, got " + cpuArchitecture);
+        }
+        if (onDemandBase < 0 || onDemandWeight < 0 || spotWeight < 0 || onDemandWeight + spotWeight == 0) {
+            throw new IllegalArgumentException("Capacity provider base and weights must not be negative and at least one weight must be positive");
+        }
+    }
+
+    static ServiceCompute fromContext(ContextConfig config, String prefix) {
+        return new ServiceCompute(
+                config.getString(prefix + ".cpuArchitecture", "X86_64").toUpperCase(),
+                config.getInt(prefix + ".onDemandBase", 1),
+                config.getInt(prefix + ".onDemandWeight", 1),
+                config.getInt(prefix + ".spotWeight", 0));
+    }
+
+    CpuArchitecture toCpuArchitecture() {
+        return cpuArchitecture.equals("ARM64") ? CpuArchitecture.ARM64 : CpuArchitecture.X86_64;
+    }
+
+    List<CapacityProviderStrategy> capacityProviderStrategies() {
+        List<CapacityProviderStrategy> strategies = new ArrayList<>();
+        strategies.add(CapacityProviderStrategy.builder()
+                .capacityProvider("FARGATE")
+                .base(onDemandBase)
+                .weight(onDemandWeight)
+                .build());
+        if (spotWeight > 0) {
+            strategies.add(CapacityProviderStrategy.builder()
+                    .capacityProvider("FARGATE_SPOT")
+                    .weight(spotWeight)
+                    .build());
+        }
+        return strategies;
+    }
+}
@@ -0,0 +1,39 @@
+package com.myorg;
+
+/**
+ * Rolling deployment of a Fargate service. minHealthyPercent and maxHealthyPercent bound the running tasks
+ * during a deploy relative to the desired count; the circuit breaker stops a deploy whose tasks keep failing
+ * and, with rollback, returns to the last working task definition. Replaced tasks drain from the ALB target
+ * group for deregistrationDelaySeconds.
+ */
+record ServiceDeployment(
+        boolean circuitBreaker,
+        boolean rollback,
+        int minHealthyPercent,
+        int maxHealthyPercent,
+        int deregistrationDelaySeconds
+) {
+    ServiceDeployment {
+        if (rollback && !circuitBreaker) {
+            throw new IllegalArgumentException("Deployment rollback needs the circuit breaker");
+        }
+        if (minHealthyPercent < 0 || minHealthyPercent > 100) {
+            throw new IllegalArgumentException("Minimum healthy percent must be between 0 and 100, got " + minHealthyPercent);
+        }
+        if (maxHealthyPercent < 100 || maxHealthyPercent > 200 || maxHealthyPercent <= minHealthyPercent) {
+            throw new IllegalArgumentException("Maximum healthy percent must be between 100 and 200 and above the minimum, got " + maxHealthyPercent);
+        }
+        if (deregistrationDelaySeconds < 0 || deregistrationDelaySeconds > 3600) {
+            throw new IllegalArgumentException("Deregistration delay must be between 0 and 3600 seconds, got " + deregistrationDelaySeconds);
+        }
+    }
+
+    static ServiceDeployment fromContext(ContextConfig config, String prefix) {
+        return new ServiceDeployment(
+                config.getBoolean(prefix + ".circuitBreaker", true),
+                config.getBoolean(prefix + ".rollback", true),
+                config.getInt(prefix + ".minHealthyPercent", 100),
+                config.getInt(prefix + ".maxHealthyPercent", 200),
+                config.getInt(prefix + ".deregistrationDelaySeconds", 15));
+    }
+}
@@ -0,0 +1,67 @@
+package com.myorg;
+
+import java.util.List;
+
+/**
+ * Task auto-scaling of an ECS service: min/max task count, target tracking on CPU, memory and
+ * ALB requests per target, plus scheduled min/max changes for known traffic windows.
+ */
+record ServiceScaling(
+        int minTasks,
+        int maxTasks,
+        int cpuTargetPercent,
+        int memoryTargetPercent,
+        int requestsPerTarget,
+        int scaleInCooldownSeconds,
+        int scaleOutCooldownSeconds,
+        List<ScheduledScaling> schedules
+) {
+    ServiceScaling {
+        if (minTasks < 1 || minTasks > maxTasks) {
+            throw new IllegalArgumentException("Task count must satisfy 1 <= min <= max, got " + minTasks + ".." + maxTasks);
+        }
+        if (cpuTargetPercent < 10 || cpuTargetPercent > 90 || memoryTargetPercent < 10 || memoryTargetPercent > 90) {
+            throw new IllegalArgumentException("CPU and memory targets must be between 10 and 90 percent");
+        }
+        if (requestsPerTarget < 1) {
+            throw new IllegalArgumentException("Requests per target must be positive, got " + requestsPerTarget);
+        }
+    }
+
+    static ServiceScaling fromContext(ContextConfig config, String prefix) {
+        return new ServiceScaling(
+                config.getInt(prefix + ".minTasks", 2),
+                config.getInt(prefix + ".maxTasks", 6),
+                config.getInt(prefix + ".cpuTargetPercent", 60),
+                config.getInt(prefix + ".memoryTargetPercent", 75),
+                config.getInt(prefix + ".requestsPerTarget", 500),
+                config.getInt(prefix + ".scaleInCooldownSeconds", 300),
+                config.getInt(prefix + ".scaleOutCooldownSeconds", 60),
+                config.getObjectList(prefix + ".schedules").stream()
+                        .map(ScheduledScaling::fromContext)
+                        .toList());
+    }
+
+    /**
+     * Sets min/max task count at the time given by a six-field cron expression (UTC),
+     * e.g. "0 7 ? * MON-FRI *".
+     */
+    record ScheduledScaling(String name, String cron, int minTasks, int maxTasks) {
+        ScheduledScaling {
+            if (name == null || cron == null) {
+                throw new IllegalArgumentException("Scheduled scaling needs a name and a cron expression");
+            }
+            if (minTasks < 0 || minTasks > maxTasks) {
+                throw new IllegalArgumentException("Scheduled scaling '" + name + "' must satisfy 0 <= min <= max");
+            }
+        }
+
+        static ScheduledScaling fromContext(ContextObject values) {
+            return new ScheduledScaling(
+                    values.getString("name"),
+                    values.getString("cron"),
+                    values.getInt("minTasks"),
+                    values.getInt("maxTasks"));
+        }
+    }
+}
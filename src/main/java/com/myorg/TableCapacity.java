@@ -0,0 +1,47 @@
+package com.myorg;
+
+import software.amazon.awscdk.services.dynamodb.BillingMode;
+
+/**
+ * Capacity settings of a DynamoDB table or global secondary index.
+ * With PROVISIONED billing the read and write capacity starts at the minimum and is scaled up to the maximum
+ * by target tracking on the consumed capacity. With PAY_PER_REQUEST the min/max values are ignored.
+ */
+record TableCapacity(
+        BillingMode billingMode,
+        int minReadCapacity,
+        int maxReadCapacity,
+        int minWriteCapacity,
+        int maxWriteCapacity,
+        int targetUtilizationPercent
+) {
+    TableCapacity {
+        if (minReadCapacity < 1 || minReadCapacity > maxReadCapacity) {
+            throw new IllegalArgumentException("Read capacity must satisfy 1 <= min <= max, got "
+                    + minReadCapacity + ".." + maxReadCapacity);
+        }
+        if (minWriteCapacity < 1 || minWriteCapacity > maxWriteCapacity) {
+            throw new IllegalArgumentException("Write capacity must satisfy 1 <= min <= max, got "
+                    + minWriteCapacity + ".." + maxWriteCapacity);
+        }
+        // Application Auto Scaling only accepts DynamoDB targets between 20 and 90 percent
+        if (targetUtilizationPercent < 20 || targetUtilizationPercent > 90) {
+            throw new IllegalArgumentException("Target utilization must be between 20 and 90 percent, got "
+                    + targetUtilizationPercent);
+        }
+    }
+
+    static TableCapacity fromContext(ContextConfig config, String prefix) {
+        return new TableCapacity(
+                config.getEnum(prefix + ".billingMode", BillingMode.class, BillingMode.PROVISIONED),
+                config.getInt(prefix + ".minReadCapacity", 1),
+                config.getInt(prefix + ".maxReadCapacity", 10),
+                config.getInt(prefix + ".minWriteCapacity", 1),
+                config.getInt(prefix + ".maxWriteCapacity", 10),
+                config.getInt(prefix + ".targetUtilizationPercent", 70));
+    }
+
+    boolean isProvisioned() {
+        return billingMode == BillingMode.PROVISIONED;
+    }
+}
@@ -0,0 +1,108 @@
+package com.myorg;
+
+import software.amazon.awscdk.services.dynamodb.Attribute;
+import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.ProjectionType;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A query access pattern of a table, created as a global secondary index. Declared in cdk.json, e.g.
+ * { "name": "byCategoryPrice", "partitionKey": "category", "sortKey": "price", "sortKeyType": "NUMBER",
+ *   "projection": "INCLUDE", "nonKeyAttributes": ["productName"], "maxReadCapacity": 20 }.
+ * Capacity keys left out fall back to the table capacity; the billing mode is always the table's.
+ */
+record TableIndex(
+        String name,
+        String partitionKey,
+        AttributeType partitionKeyType,
+        String sortKey,
+        AttributeType sortKeyType,
+        ProjectionType projection,
+        List<String> nonKeyAttributes,
+        TableCapacity capacity
+) {
+    TableIndex {
+        if (name == null || !name.matches("[A-Za-z0-9_.-]{3,255}")) {
+            throw new IllegalArgumentException("Index name must be 3-255 characters of [A-Za-z0-9_.-], got " + name);
+        }
+        if (partitionKey == null) {
+            throw new IllegalArgumentException("Index " + name + " needs a partition key");
+        }
+        if (projection == ProjectionType.INCLUDE && nonKeyAttributes.isEmpty()) {
+            throw new IllegalArgumentException("Index " + name + " uses the INCLUDE projection without nonKeyAttributes");
+        }
+    }
+
+    /**
+     * Reads the indexes of a table. Index names must be unique, and an attribute used as a key by several
+     * indexes or by the table must have the same type in all of them, as DynamoDB keeps one definition per attribute.
+     * A single deployment can create or delete only one index, so add or remove indexes one deploy at a time.
+     */
+    static List<TableIndex> fromContext(ContextConfig config, String key, Attribute tableKey, TableCapacity tableCapacity) {
+        List<TableIndex> indexes = config.getObjectList(key).stream()
+                .map(values -> fromContext(values, tableCapacity))
+                .toList();
+
+        Set<String> names = new HashSet<>();
+        Map<String, TableIndex> attributeOwners = new HashMap<>();
+        for (TableIndex index : indexes) {
+            if (!names.add(index.name())) {
+                throw new IllegalArgumentException("Context value '" + key + "' declares index " + index.name() + " twice");
+            }
+            for (String attribute : index.keyAttributes()) {
+                if (attribute.equals(tableKey.getName()) && index.keyType(attribute) != tableKey.getType()) {
+                    throw new IllegalArgumentException("Attribute " + attribute + " is " + tableKey.getType()
+                            + " in the table key but " + index.keyType(attribute) + " in index " + index.name());
+                }
+                TableIndex owner = attributeOwners.putIfAbsent(attribute, index);
+                if (owner != null && owner.keyType(attribute) != index.keyType(attribute)) {
+                    throw new IllegalArgumentException("Attribute " + attribute + " is " + owner.keyType(attribute)
+                            + " in index " + owner.name() + " but " + index.keyType(attribute) + " in index " + index.name());
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static TableIndex fromContext(ContextObject values, TableCapacity tableCapacity) {
+        String sortKey = values.getString("sortKey", null);
+        return new TableIndex(
+                values.getString("name"),
+                values.getString("partitionKey"),
+                values.getEnum("partitionKeyType", AttributeType.class, AttributeType.STRING),
+                sortKey,
+                sortKey == null ? null : values.getEnum("sortKeyType", AttributeType.class, AttributeType.STRING),
+                values.getEnum("projection", ProjectionType.class, ProjectionType.ALL),
+                values.getStringList("nonKeyAttributes", List.of()),
+                new TableCapacity(
+                        tableCapacity.billingMode(),
+                        values.getInt("minReadCapacity", tableCapacity.minReadCapacity()),
+                        values.getInt("maxReadCapacity", tableCapacity.maxReadCapacity()),
+                        values.getInt("minWriteCapacity", tableCapacity.minWriteCapacity()),
+                        values.getInt("maxWriteCapacity", tableCapacity.maxWriteCapacity()),
+                        values.getInt("targetUtilizationPercent", tableCapacity.targetUtilizationPercent())));
+    }
+
+    List<String> keyAttributes() {
+        return sortKey == null ? List.of(partitionKey) : List.of(partitionKey, sortKey);
+    }
+
+    AttributeType keyType(String attribute) {
+        return attribute.equals(partitionKey) ? partitionKeyType : sortKeyType;
+    }
+
+    /**
+     * Name of the container environment variable carrying the index name, e.g. byCategoryPrice ->
+     * AWS_PRODUCTSDDB_INDEX_BY_CATEGORY_PRICE for the "AWS_PRODUCTSDDB_INDEX_" prefix.
+     */
+    String environmentVariable(String prefix) {
+        return prefix + name.replaceAll("([a-z0-9])([A-Z])", "$1_$2")
+                .replaceAll("[^A-Za-z0-9]", "_")
+                .toUpperCase();
+    }
+}
@@ -0,0 +1,63 @@
+package com.myorg;
+
+import java.util.List;
+
+/**
+ * End-to-end X-Ray tracing: the REST API stage starts the trace and makes the sampling decision, which the
+ * service honours. Requests that match none of the route rules are sampled with the default reservoir
+ * (traces per second) plus fixedRate of the rest. Without configured rules, GET /products and
+ * GET /products/{id} are sampled at 1%.
+ */
+record TracingSettings(
+        boolean apiTracing,
+        int reservoirSize,
+        double fixedRate,
+        List<SamplingRule> rules
+) {
+    TracingSettings {
+        if (reservoirSize < 0 || fixedRate < 0 || fixedRate > 1) {
+            throw new IllegalArgumentException("Sampling needs a reservoir >= 0 and a fixed rate between 0 and 1");
+        }
+    }
+
+    static TracingSettings fromContext(ContextConfig config) {
+        List<SamplingRule> rules = config.getObjectList("tracing.rules").stream()
+                .map(SamplingRule::fromContext)
+                .toList();
+        return new TracingSettings(
+                config.getBoolean("tracing.apiTracing", true),
+                config.getInt("tracing.reservoirSize", 1),
+                config.getDouble("tracing.fixedRate", 0.05),
+                rules.isEmpty()
+                        ? List.of(new SamplingRule("ECommerceReadProducts", "GET", "*/products*", 100, 1, 0.01))
+                        : rules);
+    }
+
+    /**
+     * Sampling rule for one route; urlPath and httpMethod accept the X-Ray wildcards * and ?.
+     * Rules with a lower priority number are evaluated first.
+     */
+    record SamplingRule(String name, String httpMethod, String urlPath, int priority, int reservoirSize, double fixedRate) {
+        SamplingRule {
+            if (name == null || name.length() > 32 || !name.matches("[A-Za-z0-9_-]+")) {
+                throw new IllegalArgumentException("Sampling rule names must be up to 32 letters, digits, '-' or '_', got " + name);
+            }
+            if (priority < 1 || priority > 9998) {
+                throw new IllegalArgumentException("Sampling rule '" + name + "' priority must be between 1 and 9998");
+            }
+            if (reservoirSize < 0 || fixedRate < 0 || fixedRate > 1) {
+                throw new IllegalArgumentException("Sampling rule '" + name + "' needs a reservoir >= 0 and a fixed rate between 0 and 1");
+            }
+        }
+
+        static SamplingRule fromContext(ContextObject values) {
+            return new SamplingRule(
+                    values.getString("name"),
+                    values.getString("httpMethod", "*"),
+                    values.getString("urlPath", "*"),
+                    values.getInt("priority"),
+                    values.getInt("reservoirSize", 1),
+                    values.getDouble("fixedRate"));
+        }
+    }
+}
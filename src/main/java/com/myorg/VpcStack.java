@@ -2,23 +2,55 @@ package com.myorg;
 
 import software.amazon.awscdk.Stack;
 import software.amazon.awscdk.StackProps;
-import software.amazon.awscdk.services.ec2.Vpc;
-import software.amazon.awscdk.services.ec2.VpcProps;
+import software.amazon.awscdk.services.ec2.*;
 import software.constructs.Construct;
 
 public class VpcStack extends Stack {
 
     private final Vpc vpc;
 
-    public VpcStack(final Construct scope, final String id, final StackProps props) {
+    public VpcStack(final Construct scope, final String id, final StackProps props, VpcStackProps vpcStackProps) {
         super(scope, id, props);
 
         this.vpc = new Vpc(this, "Vpc", VpcProps.builder()
                 .vpcName("ECommerceVPC")
-                .maxAzs(2)
+                .maxAzs(vpcStackProps.maxAzs())
                 .natGateways(0) // Do not set 0 for production
                 .build());
 
+        if (vpcStackProps.privateNetworking()) {
+            this.addPrivateEndpoints();
+        }
+    }
+
+    /**
+     * Lets tasks in the isolated subnets reach DynamoDB, ECR, CloudWatch Logs, X-Ray and SQS without a public IP.
+     * ECR stores image layers in S3, so image pulls need the S3 gateway endpoint as well.
+     */
+    private void addPrivateEndpoints() {
+        this.vpc.addGatewayEndpoint("DynamoDbEndpoint", GatewayVpcEndpointOptions.builder()
+                .service(GatewayVpcEndpointAwsService.DYNAMODB)
+                .build());
+        this.vpc.addGatewayEndpoint("S3Endpoint", GatewayVpcEndpointOptions.builder()
+                .service(GatewayVpcEndpointAwsService.S3)
+                .build());
+
+        SubnetSelection isolatedSubnets = SubnetSelection.builder()
+                .subnetType(SubnetType.PRIVATE_ISOLATED)
+                .build();
+        this.addInterfaceEndpoint("EcrApiEndpoint", InterfaceVpcEndpointAwsService.ECR, isolatedSubnets);
+        this.addInterfaceEndpoint("EcrDockerEndpoint", InterfaceVpcEndpointAwsService.ECR_DOCKER, isolatedSubnets);
+        this.addInterfaceEndpoint("LogsEndpoint", InterfaceVpcEndpointAwsService.CLOUDWATCH_LOGS, isolatedSubnets);
+        this.addInterfaceEndpoint("XRayEndpoint", InterfaceVpcEndpointAwsService.XRAY, isolatedSubnets);
+        this.addInterfaceEndpoint("SqsEndpoint", InterfaceVpcEndpointAwsService.SQS, isolatedSubnets);
+    }
+
+    private void addInterfaceEndpoint(String id, InterfaceVpcEndpointAwsService service, SubnetSelection subnets) {
+        this.vpc.addInterfaceEndpoint(id, InterfaceVpcEndpointOptions.builder()
+                .service(service)
+                .subnets(subnets)
+                .privateDnsEnabled(true)
+                .build());
     }
 
     public Vpc getVpc() {
@@ -26,4 +58,10 @@ public class VpcStack extends Stack {
     }
 }
 
-
+record VpcStackProps(boolean privateNetworking, int maxAzs) {
+    VpcStackProps {
+        if (maxAzs < 1 || maxAzs > 6) {
+            throw new IllegalArgumentException("VPC availability zones must be between 1 and 6, got " + maxAzs);
+        }
+    }
+}
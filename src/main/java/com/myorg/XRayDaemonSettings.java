@@ -0,0 +1,27 @@
+package com.myorg;
+
+/**
+ * X-Ray daemon sidecar of a Fargate service. The image is pinned so a task restart never pulls a different
+ * daemon; cpu and memory are reserved out of the task size next to the application container.
+ */
+record XRayDaemonSettings(
+        String image,
+        int cpu,
+        int memoryMiB
+) {
+    XRayDaemonSettings {
+        if (!PerformanceGuardrails.isPinned(image)) {
+            throw new IllegalArgumentException("X-Ray daemon image must be pinned to a version, got " + image);
+        }
+        if (cpu < 32 || memoryMiB < 32) {
+            throw new IllegalArgumentException("X-Ray daemon needs at least 32 CPU units and 32 MiB, got " + cpu + "/" + memoryMiB);
+        }
+    }
+
+    static XRayDaemonSettings fromContext(ContextConfig config, String prefix) {
+        return new XRayDaemonSettings(
+                config.getString(prefix + ".image", "public.ecr.aws/xray/aws-xray-daemon:3.3.14"),
+                config.getInt(prefix + ".cpu", 128),
+                config.getInt(prefix + ".memoryMiB", 128));
+    }
+}
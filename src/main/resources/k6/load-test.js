@@ -0,0 +1,53 @@
+// Products read load, run by every load test worker. Each iteration sends one request, so the arrival rate of
+// the scenario is the request rate of the worker. The summary line is turned into CloudWatch metrics by the
+// metric filters of the LoadTestStack log group.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const TARGET_URL = __ENV.TARGET_URL;
+const RATE = Math.max(1, Math.round(Number(__ENV.RPS) / Number(__ENV.WORKERS)));
+// Share of requests that list all products, the rest read a single product
+const LIST_RATIO = 0.2;
+
+export const options = {
+  summaryTrendStats: ['avg', 'med', 'p(95)', 'p(99)', 'max'],
+  scenarios: {
+    products: {
+      executor: 'ramping-arrival-rate',
+      startRate: 0,
+      timeUnit: '1s',
+      preAllocatedVUs: Math.max(10, RATE),
+      maxVUs: RATE * 10,
+      stages: [
+        { target: RATE, duration: __ENV.RAMP_UP },
+        { target: RATE, duration: __ENV.DURATION },
+      ],
+    },
+  },
+};
+
+export function setup() {
+  const products = http.get(TARGET_URL);
+  return { ids: products.status === 200 ? products.json().map((product) => product.id) : [] };
+}
+
+export default function (data) {
+  const list = data.ids.length === 0 || Math.random() < LIST_RATIO;
+  const url = list ? TARGET_URL : `${TARGET_URL}/${data.ids[Math.floor(Math.random() * data.ids.length)]}`;
+  const response = http.get(url, { tags: { name: list ? 'list' : 'item' } });
+  check(response, { 'status is 200': (r) => r.status === 200 });
+}
+
+export function handleSummary(data) {
+  const summary = {
+    loadTestSummary: true,
+    targetUrl: TARGET_URL,
+    workerRate: RATE,
+    requests: data.metrics.http_reqs.values.count,
+    requestsPerSecond: data.metrics.http_reqs.values.rate,
+    p95Millis: data.metrics.http_req_duration.values['p(95)'],
+    p99Millis: data.metrics.http_req_duration.values['p(99)'],
+    failedRequestRate: data.metrics.http_req_failed.values.rate,
+  };
+  return { stdout: JSON.stringify(summary) + '\n' };
+}
@@ -1,26 +1,623 @@
-// package com.myorg;
+package com.myorg;
 
-// import software.amazon.awscdk.App;
-// import software.amazon.awscdk.assertions.Template;
-// import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import software.amazon.awscdk.App;
+import software.amazon.awscdk.AppProps;
+import software.amazon.awscdk.Aspects;
+import software.amazon.awscdk.Stack;
+import software.amazon.awscdk.assertions.Annotations;
+import software.amazon.awscdk.assertions.Match;
+import software.amazon.awscdk.assertions.Template;
+import software.amazon.awscdk.services.dynamodb.Attribute;
+import software.amazon.awscdk.services.dynamodb.AttributeType;
+import software.amazon.awscdk.services.dynamodb.BillingMode;
+import software.amazon.awscdk.services.dynamodb.Table;
+import software.amazon.awscdk.services.dynamodb.TableProps;
+import software.amazon.awscdk.services.ecs.ContainerDefinitionOptions;
+import software.amazon.awscdk.services.ecs.ContainerImage;
+import software.amazon.awscdk.services.ecs.FargateTaskDefinition;
 
-// import java.util.HashMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-// import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
-// example test. To run these tests, uncomment this file, along with the
-// example resource in java/src/main/java/com/myorg/ECommerceEcsCdkStack.java
-// public class ECommerceEcsCdkTest {
+public class ECommerceEcsCdkTest {
 
-//     @Test
-//     public void testStack() throws IOException {
-//         App app = new App();
-//         ECommerceEcsCdkStack stack = new ECommerceEcsCdkStack(app, "test");
+    /**
+     * Creates the whole app as {@link ECommerceEcsCdkApp} does, with the given context on top of a test account.
+     */
+    private static App app(Map<String, Object> context) {
+        Map<String, Object> appContext = new HashMap<>(context);
+        appContext.putIfAbsent("account", "123456789012");
+        App app = new App(AppProps.builder().context(appContext).build());
+        ECommerceEcsCdkApp.createStacks(app);
+        return app;
+    }
 
-//         Template template = Template.fromStack(stack);
+    private static Stack stack(App app, String id) {
+        return (Stack) app.getNode().findChild(id);
+    }
 
-//         template.hasResourceProperties("AWS::SQS::Queue", new HashMap<String, Number>() {{
-//           put("VisibilityTimeout", 300);
-//         }});
-//     }
-// }
+    private static Template template(Map<String, Object> context, String stackId) {
+        return Template.fromStack(stack(app(context), stackId));
+    }
+
+    /**
+     * Matches task definition container definitions where one container has the given environment variable.
+     */
+    private static Map<String, Object> containerEnvironment(String name, Object value) {
+        return Map.of("ContainerDefinitions", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                "Environment", Match.arrayWith(List.of(Map.of("Name", name, "Value", value))))))));
+    }
+
+    @Test
+    public void productsTableUsesOnDemandCapacityWhenConfigured() {
+        Template template = template(Map.of("productsDdb.billingMode", "PAY_PER_REQUEST"), "ProductsService");
+
+        template.hasResourceProperties("AWS::DynamoDB::Table", Map.of(
+                "TableName", "products",
+                "BillingMode", "PAY_PER_REQUEST"));
+        template.resourcePropertiesCountIs("AWS::ApplicationAutoScaling::ScalableTarget",
+                Map.of("ServiceNamespace", "dynamodb"), 0);
+    }
+
+    @Test
+    public void productsTableAutoScalesProvisionedCapacity() {
+        Template template = template(Map.of(
+                "productsDdb.billingMode", "PROVISIONED",
+                "productsDdb.minReadCapacity", 2,
+                "productsDdb.maxReadCapacity", 40,
+                "productsDdb.minWriteCapacity", 1,
+                "productsDdb.maxWriteCapacity", 20,
+                "productsDdb.targetUtilizationPercent", 65), "ProductsService");
+
+        template.hasResourceProperties("AWS::DynamoDB::Table", Map.of(
+                "ProvisionedThroughput", Map.of(
+                        "ReadCapacityUnits", 2,
+                        "WriteCapacityUnits", 1)));
+        template.hasResourceProperties("AWS::ApplicationAutoScaling::ScalableTarget", Map.of(
+                "ScalableDimension", "dynamodb:table:ReadCapacityUnits",
+                "MinCapacity", 2,
+                "MaxCapacity", 40));
+        template.hasResourceProperties("AWS::ApplicationAutoScaling::ScalableTarget", Map.of(
+                "ScalableDimension", "dynamodb:table:WriteCapacityUnits",
+                "MinCapacity", 1,
+                "MaxCapacity", 20));
+        template.resourcePropertiesCountIs("AWS::ApplicationAutoScaling::ScalingPolicy", Map.of(
+                "PolicyType", "TargetTrackingScaling",
+                "TargetTrackingScalingPolicyConfiguration", Match.objectLike(Map.of(
+                        "TargetValue", 65,
+                        "PredefinedMetricSpecification", Match.objectLike(Map.of(
+                                "PredefinedMetricType", Match.stringLikeRegexp("DynamoDB.*CapacityUtilization")))))),
+                2);
+    }
+
+    @Test
+    public void productsTableIndexesProjectAttributesAndScaleOnTheirOwn() {
+        App app = app(Map.of(
+                "productsDdb.billingMode", "PROVISIONED",
+                "productsDdb.indexes", List.of(Map.of(
+                        "name", "byCategoryPrice",
+                        "partitionKey", "category",
+                        "sortKey", "price",
+                        "sortKeyType", "NUMBER",
+                        "projection", "INCLUDE",
+                        "nonKeyAttributes", List.of("productName"),
+                        "minReadCapacity", 3,
+                        "maxReadCapacity", 30))));
+        Template template = Template.fromStack(stack(app, "ProductsService"));
+
+        template.hasResourceProperties("AWS::DynamoDB::Table", Map.of(
+                "AttributeDefinitions", Match.arrayWith(List.of(
+                        Map.of("AttributeName", "category", "AttributeType", "S"),
+                        Map.of("AttributeName", "price", "AttributeType", "N"))),
+                "GlobalSecondaryIndexes", List.of(Match.objectLike(Map.of(
+                        "IndexName", "byCategoryPrice",
+                        "KeySchema", List.of(
+                                Map.of("AttributeName", "category", "KeyType", "HASH"),
+                                Map.of("AttributeName", "price", "KeyType", "RANGE")),
+                        "Projection", Map.of(
+                                "ProjectionType", "INCLUDE",
+                                "NonKeyAttributes", List.of("productName")))))));
+        template.hasResourceProperties("AWS::ApplicationAutoScaling::ScalableTarget", Map.of(
+                "ScalableDimension", "dynamodb:index:ReadCapacityUnits",
+                "MinCapacity", 3,
+                "MaxCapacity", 30));
+        template.resourcePropertiesCountIs("AWS::ApplicationAutoScaling::ScalableTarget", Map.of(
+                "ScalableDimension", "dynamodb:index:WriteCapacityUnits"), 1);
+        template.hasResourceProperties("AWS::ECS::TaskDefinition",
+                containerEnvironment("AWS_PRODUCTSDDB_INDEX_BY_CATEGORY_PRICE", "byCategoryPrice"));
+    }
+
+    @Test
+    public void productsTableIndexesRejectConflictingAttributeTypes() {
+        IllegalArgumentException conflict = assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "productsDdb.indexes", List.of(
+                        Map.of("name", "byCategoryPrice", "partitionKey", "category",
+                                "sortKey", "price", "sortKeyType", "NUMBER"),
+                        Map.of("name", "byPriceBand", "partitionKey", "price")))));
+        assertEquals("Attribute price is NUMBER in index byCategoryPrice but STRING in index byPriceBand",
+                conflict.getMessage());
+
+        IllegalArgumentException tableKeyConflict = assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "productsDdb.indexes", List.of(Map.of("name", "byVersion", "partitionKey", "entityType",
+                        "sortKey", "id", "sortKeyType", "NUMBER")))));
+        assertEquals("Attribute id is STRING in the table key but NUMBER in index byVersion",
+                tableKeyConflict.getMessage());
+    }
+
+    @Test
+    public void ecrRepositoryKeepsImmutableTagsWithLifecyclePolicy() {
+        Template template = template(Map.of(), "Ecr");
+
+        template.hasResourceProperties("AWS::ECR::Repository", Map.of(
+                "RepositoryName", "productsservice",
+                "ImageTagMutability", "IMMUTABLE",
+                "LifecyclePolicy", Match.objectLike(Map.of(
+                        "LifecyclePolicyText", Match.stringLikeRegexp("imageCountMoreThan")))));
+        template.resourceCountIs("AWS::ECR::PullThroughCacheRule", 0);
+    }
+
+    @Test
+    public void ecrMirrorsPublicRegistryWhenEnabled() {
+        Template template = template(Map.of("ecr.mirrorPublicImages", true), "Ecr");
+
+        template.hasResourceProperties("AWS::ECR::PullThroughCacheRule", Map.of(
+                "EcrRepositoryPrefix", "ecr-public",
+                "UpstreamRegistryUrl", "public.ecr.aws"));
+    }
+
+    @Test
+    public void vpcUsesConfiguredAvailabilityZones() {
+        Template template = template(Map.of("network.maxAzs", 3), "Vpc");
+
+        template.resourceCountIs("AWS::EC2::Subnet", 6);
+        template.resourceCountIs("AWS::EC2::VPCEndpoint", 0);
+    }
+
+    @Test
+    public void vpcAddsEndpointsForPrivateNetworking() {
+        Template template = template(Map.of(
+                "network.privateNetworking", true,
+                "ecr.mirrorPublicImages", true), "Vpc");
+
+        template.hasResourceProperties("AWS::EC2::VPCEndpoint", Map.of("VpcEndpointType", "Gateway"));
+        template.hasResourceProperties("AWS::EC2::VPCEndpoint", Map.of("VpcEndpointType", "Interface"));
+
+        // Without internet access the public X-Ray daemon image can only come through the mirror
+        IllegalArgumentException unmirrored = assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "network.privateNetworking", true)));
+        assertEquals("Sidecar image public.ecr.aws/xray/aws-xray-daemon:3.3.14 cannot be pulled with "
+                + "network.privateNetworking; enable ecr.mirrorPublicImages or use an image from a private ECR repository",
+                unmirrored.getMessage());
+    }
+
+    @Test
+    public void clusterUsesFargateCapacityProviders() {
+        Template template = template(Map.of(), "Cluster");
+
+        template.hasResourceProperties("AWS::ECS::Cluster", Map.of("ClusterName", "ECommerceCluster"));
+        template.hasResourceProperties("AWS::ECS::ClusterCapacityProviderAssociations", Map.of(
+                "CapacityProviders", Match.arrayWith(List.of("FARGATE", "FARGATE_SPOT"))));
+    }
+
+    @Test
+    public void nlbForwardsToProductsServiceTasksAndAlbRoutesByPath() {
+        App app = app(Map.of());
+        Template template = Template.fromStack(stack(app, "Nlb"));
+
+        template.hasResourceProperties("AWS::ElasticLoadBalancingV2::TargetGroup", Map.of(
+                "Name", "productsServiceNlb",
+                "TargetType", "ip",
+                "Protocol", "TCP",
+                "Port", 8080,
+                "HealthCheckIntervalSeconds", 10));
+        Map.of("deregistration_delay.timeout_seconds", "15",
+                "deregistration_delay.connection_termination.enabled", "true",
+                "preserve_client_ip.enabled", "false").forEach((key, value) ->
+                template.hasResourceProperties("AWS::ElasticLoadBalancingV2::TargetGroup", Map.of(
+                        "Name", "productsServiceNlb",
+                        "TargetGroupAttributes", Match.arrayWith(List.of(Map.of("Key", key, "Value", value))))));
+        template.hasResourceProperties("AWS::ElasticLoadBalancingV2::TargetGroup", Map.of(
+                "Name", "productsServiceAlb",
+                "TargetType", "ip",
+                "Protocol", "HTTP",
+                "HealthCheckPath", "/actuator/health"));
+        template.hasResourceProperties("AWS::ElasticLoadBalancingV2::LoadBalancer", Map.of(
+                "Type", "network",
+                "LoadBalancerAttributes", Match.arrayWith(List.of(Map.of(
+                        "Key", "load_balancing.cross_zone.enabled",
+                        "Value", "true")))));
+        template.hasResourceProperties("AWS::ElasticLoadBalancingV2::Listener", Map.of(
+                "Port", NlbStack.LISTENER_PORT,
+                "Protocol", "HTTP",
+                "DefaultActions", Match.arrayWith(List.of(Match.objectLike(Map.of("Type", "fixed-response"))))));
+        template.resourceCountIs("AWS::ApiGateway::VpcLink", 1);
+        // Ids of the listeners and target groups deployed before services shared the ALB listener
+        assertEquals(List.of(
+                        "AlbProductsServiceAlbListener",
+                        "AlbProductsServiceAlbListenerProductsServiceAlbTargetGroup",
+                        "NlbProductsServiceNlbListener",
+                        "NlbProductsServiceNlbListenerProductsServiceNlbTargetGroup"),
+                List.of("AWS::ElasticLoadBalancingV2::Listener", "AWS::ElasticLoadBalancingV2::TargetGroup").stream()
+                        .flatMap(type -> template.findResources(type).keySet().stream())
+                        .map(logicalId -> logicalId.substring(0, logicalId.length() - 8))
+                        .sorted()
+                        .toList());
+
+        Template productsService = Template.fromStack(stack(app, "ProductsService"));
+        assertEquals(Set.of("ProductsServiceDC973D0F"), productsService.findResources("AWS::ECS::Service").keySet());
+        assertEquals(Set.of("XRayLogGroup0F7C4A58"), productsService.findResources("AWS::Logs::LogGroup", Map.of(
+                "Properties", Map.of("LogGroupName", "XRayProductsService"))).keySet());
+        productsService.hasResourceProperties("AWS::ECS::Service", Map.of(
+                "LoadBalancers", Match.arrayWith(List.of(
+                        Match.objectLike(Map.of("ContainerName", "productsService", "ContainerPort", 8080)),
+                        Match.objectLike(Map.of("ContainerName", "productsService", "ContainerPort", 8080))))));
+    }
+
+    @Test
+    public void catalogCacheIsEncryptedValkeyWhenEnabled() {
+        Template template = template(Map.of("catalogCache.enabled", true), "Cache");
+
+        template.hasResourceProperties("AWS::ElastiCache::ReplicationGroup", Map.of(
+                "Engine", "valkey",
+                "TransitEncryptionEnabled", true));
+    }
+
+    @Test
+    public void productsServiceRoutesByPathAndScalesTasks() {
+        Template template = template(Map.of(
+                "productsService.scaling.minTasks", 2,
+                "productsService.scaling.maxTasks", 6), "ProductsService");
+
+        template.hasResourceProperties("AWS::ECS::TaskDefinition", Map.of(
+                "Family", "products-service",
+                "Cpu", "512",
+                "Memory", "1024",
+                "ContainerDefinitions", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                        "Name", "productsService",
+                        "Essential", true))))));
+        template.hasResourceProperties("AWS::ElasticLoadBalancingV2::ListenerRule", Map.of(
+                "Priority", 10,
+                "Conditions", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                        "PathPatternConfig", Map.of("Values", List.of("/api/products", "/api/products/*"))))))));
+        template.hasResourceProperties("AWS::ECS::Service", Map.of(
+                "DeploymentConfiguration", Match.objectLike(Map.of(
+                        "DeploymentCircuitBreaker", Map.of("Enable", true, "Rollback", true),
+                        "MinimumHealthyPercent", 100,
+                        "MaximumPercent", 200))));
+        template.hasResourceProperties("AWS::ApplicationAutoScaling::ScalableTarget", Map.of(
+                "ServiceNamespace", "ecs",
+                "MinCapacity", 2,
+                "MaxCapacity", 6));
+    }
+
+    @Test
+    public void containerHealthCheckUsesTheContainerPort() {
+        Template template = template(Map.of("productsService.containerPort", 9090), "ProductsService");
+
+        template.hasResourceProperties("AWS::ECS::TaskDefinition", Map.of(
+                "ContainerDefinitions", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                        "HealthCheck", Match.objectLike(Map.of(
+                                "Command", List.of("CMD-SHELL", "curl -fs http://localhost:9090/actuator/health || exit 1")))))))));
+    }
+
+    @Test
+    public void healthCheckTimeoutStaysWithinTheContainerHealthCheckLimit() {
+        IllegalArgumentException tooLong = assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "productsService.healthCheck.intervalSeconds", 120,
+                "productsService.healthCheck.timeoutSeconds", 90)));
+        assertEquals("Health check timeout must be between 2 and 60 seconds and shorter than the interval, got 90",
+                tooLong.getMessage());
+    }
+
+    @Test
+    public void logRouterImageAndBufferSizeAreBounded() {
+        assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "productsService.logging.logRouterImage", "public.ecr.aws/aws-observability/aws-for-fluent-bit:init-latest")));
+        assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "productsService.logging.bufferSizeMiB", 512)));
+
+        Template template = template(Map.of("productsService.logging.driver", "FIRELENS"), "ProductsService");
+        template.hasResourceProperties("AWS::ECS::TaskDefinition", Map.of(
+                "ContainerDefinitions", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                        "Name", "logRouter",
+                        "Image", "public.ecr.aws/aws-observability/aws-for-fluent-bit:init-2.32.4"))))));
+    }
+
+    @Test
+    public void daxClusterIsReachableFromTheServiceOnly() {
+        Template template = template(Map.of(
+                "productsDdb.dax.enabled", true,
+                "productsDdb.dax.nodeCount", 3), "ProductsService");
+
+        template.hasResourceProperties("AWS::DAX::Cluster", Map.of(
+                "ClusterName", "products-dax",
+                "ReplicationFactor", 3,
+                "ClusterEndpointEncryptionType", "TLS",
+                "SSESpecification", Map.of("SSEEnabled", true)));
+        template.hasResourceProperties("AWS::EC2::SecurityGroup", Map.of(
+                "GroupDescription", Match.stringLikeRegexp("products DAX cluster"),
+                "SecurityGroupIngress", Match.absent()));
+        template.resourcePropertiesCountIs("AWS::EC2::SecurityGroupIngress", Map.of(
+                "IpProtocol", "tcp",
+                "FromPort", 9111,
+                "ToPort", 9111,
+                "GroupId", Map.of("Fn::GetAtt", List.of(Match.stringLikeRegexp("DaxSecurityGroup"), "GroupId")),
+                "SourceSecurityGroupId", Map.of("Fn::GetAtt", List.of(Match.stringLikeRegexp("ProductsService.*SecurityGroup"), "GroupId"))),
+                1);
+        template.hasResourceProperties("AWS::ECS::TaskDefinition", containerEnvironment("AWS_PRODUCTSDDB_DAX_ENDPOINT",
+                Map.of("Fn::GetAtt", List.of(Match.stringLikeRegexp("DaxCluster"), "ClusterDiscoveryEndpointURL"))));
+    }
+
+    @Test
+    public void changePipelineBatchesStreamRecordsIntoTheEventsQueue() {
+        Template template = template(Map.of(
+                "productsDdb.stream.enabled", true,
+                "productsDdb.stream.batchSize", 50,
+                "productsDdb.stream.batchingWindowSeconds", 5,
+                "productsDdb.stream.parallelizationFactor", 4,
+                "productsDdb.stream.maximumRetryAttempts", 2,
+                "productsDdb.stream.maxReceiveCount", 3), "ProductsService");
+
+        template.hasResourceProperties("AWS::DynamoDB::Table", Map.of(
+                "StreamSpecification", Map.of("StreamViewType", "NEW_AND_OLD_IMAGES")));
+        template.hasResourceProperties("AWS::Pipes::Pipe", Map.of(
+                "Name", "products-events",
+                "Source", Map.of("Fn::GetAtt", List.of(Match.stringLikeRegexp("ProductsDdb"), "StreamArn")),
+                "Target", Map.of("Fn::GetAtt", List.of(Match.stringLikeRegexp("ProductsEventsQueue"), "Arn")),
+                "SourceParameters", Map.of("DynamoDBStreamParameters", Match.objectLike(Map.of(
+                        "StartingPosition", "LATEST",
+                        "BatchSize", 50,
+                        "MaximumBatchingWindowInSeconds", 5,
+                        "ParallelizationFactor", 4,
+                        "MaximumRetryAttempts", 2,
+                        "DeadLetterConfig", Map.of("Arn",
+                                Map.of("Fn::GetAtt", List.of(Match.stringLikeRegexp("ProductsEventsDlq"), "Arn")))))),
+                "TargetParameters", Map.of("SqsQueueParameters", Map.of(
+                        "MessageGroupId", "$.dynamodb.Keys.id.S",
+                        "MessageDeduplicationId", "$.eventID"))));
+        template.hasResourceProperties("AWS::SQS::Queue", Map.of(
+                "QueueName", "products-events.fifo",
+                "FifoQueue", true,
+                "RedrivePolicy", Map.of(
+                        "maxReceiveCount", 3,
+                        "deadLetterTargetArn", Map.of("Fn::GetAtt", List.of(Match.stringLikeRegexp("ProductsEventsFifoDlq"), "Arn")))));
+        template.hasResourceProperties("AWS::ECS::TaskDefinition", containerEnvironment("AWS_PRODUCTS_EVENTS_QUEUE_URL",
+                Map.of("Ref", Match.stringLikeRegexp("ProductsEventsQueue"))));
+    }
+
+    @Test
+    public void changePipelineSendsUndeliverableRecordsToTheConfiguredQueue() {
+        String failureQueueArn = "arn:aws:sqs:eu-north-1:123456789012:ecommerce-failures";
+        Template template = template(Map.of(
+                "productsDdb.stream.enabled", true,
+                "productsDdb.stream.failureQueueArn", failureQueueArn), "ProductsService");
+
+        template.hasResourceProperties("AWS::Pipes::Pipe", Map.of(
+                "SourceParameters", Map.of("DynamoDBStreamParameters", Match.objectLike(Map.of(
+                        "DeadLetterConfig", Map.of("Arn", failureQueueArn))))));
+        template.hasResourceProperties("AWS::IAM::Policy", Map.of(
+                "PolicyDocument", Match.objectLike(Map.of(
+                        "Statement", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                                "Resource", failureQueueArn))))))));
+    }
+
+    @Test
+    public void restApiStageIsThrottledAndTraced() {
+        Template template = template(Map.of(), "Api");
+
+        template.resourceCountIs("AWS::ApiGateway::Method", ProductsServiceStack.API_ROUTES.size());
+        template.hasResourceProperties("AWS::ApiGateway::Stage", Map.of(
+                "TracingEnabled", true,
+                "MethodSettings", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                        "ResourcePath", "/*",
+                        "HttpMethod", "*",
+                        "ThrottlingRateLimit", 1000,
+                        "ThrottlingBurstLimit", 500))))));
+    }
+
+    @Test
+    public void restApiCompressesResponsesAndValidatesProductBodies() {
+        Template template = template(Map.of("api.compression.minSizeBytes", 2048), "Api");
+
+        template.hasResourceProperties("AWS::ApiGateway::RestApi", Map.of("MinimumCompressionSize", 2048));
+        template.resourceCountIs("AWS::ApiGateway::Model", 1);
+        template.hasResourceProperties("AWS::ApiGateway::Model", Map.of(
+                "Name", "Product",
+                "Schema", Match.objectLike(Map.of(
+                        "required", List.of("productName", "code", "price")))));
+        template.hasResourceProperties("AWS::ApiGateway::RequestValidator", Map.of("ValidateRequestBody", true));
+        template.resourcePropertiesCountIs("AWS::ApiGateway::Method", Map.of(
+                "RequestModels", Match.objectLike(Map.of("application/json", Match.anyValue()))), 2);
+    }
+
+    @Test
+    public void httpApiCreatesRouteForEveryApiRoute() {
+        App app = app(Map.of("api.frontDoor", "BOTH"));
+        Template template = Template.fromStack(stack(app, "HttpApi"));
+
+        template.resourceCountIs("AWS::ApiGatewayV2::Route", ProductsServiceStack.API_ROUTES.size());
+        template.hasResourceProperties("AWS::ApiGatewayV2::Route", Map.of("RouteKey", "GET /products/{id}"));
+        Template.fromStack(stack(app, "Api")).resourceCountIs("AWS::ApiGateway::RestApi", 1);
+    }
+
+    @Test
+    public void observabilityCreatesDashboardAlarmsAndSamplingRules() {
+        Template template = template(Map.of(), "Observability");
+
+        template.hasResourceProperties("AWS::CloudWatch::Dashboard", Map.of("DashboardName", "ECommerce-Performance"));
+        template.hasResourceProperties("AWS::CloudWatch::Alarm", Map.of("Threshold", 85));
+        template.hasResourceProperties("AWS::XRay::SamplingRule", Map.of(
+                "SamplingRule", Match.objectLike(Map.of(
+                        "RuleName", "ECommerceDefault",
+                        "Priority", 9999,
+                        "ServiceName", Match.objectLike(Map.of("Fn::Join", Match.arrayWith(List.of(
+                                Match.arrayWith(List.of("ECommerceAPI/")))))),
+                        "ResourceArn", Match.objectLike(Map.of("Fn::Join", Match.anyValue()))))));
+    }
+
+    @Test
+    public void samplingRulesMatchTheServiceWithoutApiTracing() {
+        Template template = template(Map.of("tracing.apiTracing", false), "Observability");
+
+        template.allResourcesProperties("AWS::XRay::SamplingRule", Map.of(
+                "SamplingRule", Match.objectLike(Map.of(
+                        "ServiceName", "productsservice",
+                        "ResourceArn", "*"))));
+    }
+
+    @Test
+    public void loadTestDefinesWorkersAndPublishesSummaryMetrics() {
+        App app = app(Map.of(
+                "loadTest.enabled", true,
+                "loadTest.target", "NLB",
+                "loadTest.workers", 5));
+        Template template = Template.fromStack(stack(app, "LoadTest"));
+
+        template.hasResourceProperties("AWS::ECS::TaskDefinition", Map.of(
+                "Family", "ecommerce-load-test",
+                "ContainerDefinitions", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                        "Image", "grafana/k6:0.57.0",
+                        "Environment", Match.arrayWith(List.of(Map.of("Name", "WORKERS", "Value", "5")))))))));
+        template.resourcePropertiesCountIs("AWS::Logs::MetricFilter", Map.of(
+                "MetricTransformations", Match.arrayWith(List.of(Match.objectLike(Map.of(
+                        "MetricNamespace", LoadTestStack.METRIC_NAMESPACE))))), 4);
+        template.hasResource("AWS::Logs::LogGroup", Map.of(
+                "Properties", Map.of("LogGroupName", "ECommerceLoadTest", "RetentionInDays", 30),
+                "DeletionPolicy", "Delete"));
+        template.hasOutput("RunLoadTestCommand", Map.of());
+    }
+
+    @Test
+    public void secondRegionUsesTheReplicasOfThePrimaryRegion() {
+        App app = app(Map.of(
+                "regions", "eu-north-1,eu-west-1",
+                "productsDdb.stream.enabled", true,
+                "api.cache.enabled", true,
+                "api.domain.name", "api.example.com",
+                "api.domain.hostedZoneId", "Z0123456789ABC",
+                "api.domain.hostedZoneName", "example.com"));
+
+        for (String stackId : List.of("Ecr", "Vpc", "Cluster", "Nlb", "ProductsService", "Api", "Observability")) {
+            assertEquals("eu-west-1", stack(app, stackId + "-eu-west-1").getRegion(), stackId);
+        }
+
+        Template primaryTable = Template.fromStack(stack(app, "ProductsService"));
+        primaryTable.hasResourceProperties("Custom::DynamoDBReplica", Map.of(
+                "TableName", Match.anyValue(),
+                "Region", "eu-west-1"));
+        Template replicaTable = Template.fromStack(stack(app, "ProductsService-eu-west-1"));
+        replicaTable.resourceCountIs("AWS::DynamoDB::Table", 0);
+        replicaTable.hasResourceProperties("Custom::AWS", Map.of(
+                "Update", Match.stringLikeRegexp("describeTable")));
+
+        Template.fromStack(stack(app, "Ecr")).hasResourceProperties("AWS::ECR::ReplicationConfiguration", Map.of(
+                "ReplicationConfiguration", Map.of("Rules", List.of(Match.objectLike(Map.of(
+                        "Destinations", List.of(Map.of("Region", "eu-west-1", "RegistryId", "123456789012"))))))));
+        Template.fromStack(stack(app, "Ecr-eu-west-1")).resourceCountIs("AWS::ECR::Repository", 0);
+
+        for (String region : List.of("eu-north-1", "eu-west-1")) {
+            Template api = Template.fromStack(stack(app, region.equals("eu-north-1") ? "Api" : "Api-" + region));
+            api.hasResourceProperties("AWS::Route53::RecordSet", Map.of(
+                    "Name", "api.example.com.",
+                    "Type", "A",
+                    "Region", region,
+                    "SetIdentifier", "ECommerceAPI-" + region));
+        }
+        Template.fromStack(stack(app, "Api-eu-west-1")).hasResourceProperties("AWS::IAM::ManagedPolicy", Map.of(
+                "ManagedPolicyName", "ECommerceApiProductsCacheInvalidation-eu-west-1"));
+        Template.fromStack(stack(app, "Observability-eu-west-1")).hasResourceProperties("AWS::CloudWatch::Dashboard",
+                Map.of("DashboardName", "ECommerce-Performance-eu-west-1"));
+    }
+
+    @Test
+    public void contextObjectsNameMissingAndMistypedKeys() {
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "tracing.rules", List.of(Map.of("name", "ReadProducts", "fixedRate", 0.1)))));
+        assertEquals("Context value 'tracing.rules[0].priority' is required", missing.getMessage());
+
+        IllegalArgumentException mistyped = assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "api.throttle.partnerUsagePlans", List.of(Map.of(
+                        "name", "Partner", "rateLimit", "fast", "burstLimit", 10, "quotaLimit", 1000))))));
+        assertEquals("Context value 'api.throttle.partnerUsagePlans[0].rateLimit' must be a number but was 'fast'",
+                mistyped.getMessage());
+    }
+
+    @Test
+    public void profileBlocksRejectKeysNoSettingReads() {
+        IllegalArgumentException typo = assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "profiles", Map.of(
+                        "dev", Map.of("productsService.scaling.maxTasks", 4),
+                        "load-test", Map.of("productsService.scalng.maxTasks", 20))))));
+        assertEquals("Unknown context keys in profile blocks: profiles.load-test.productsService.scalng.maxTasks",
+                typo.getMessage());
+
+        // REST API settings are known keys even when the HTTP API is the only front door
+        app(Map.of(
+                "api.frontDoor", "HTTP_ALB",
+                "profiles", Map.of("dev", Map.of("api.throttle.rateLimit", 100))));
+    }
+
+    @Test
+    public void guardrailsWarnAboutSingleTaskServicesOutsideProd() {
+        App app = app(Map.of("productsService.scaling.minTasks", 1));
+
+        Annotations.fromStack(stack(app, "ProductsService")).hasWarning("*", Match.stringLikeRegexp("scales down to 1 task"));
+        Annotations.fromStack(stack(app, "ProductsService")).hasNoError("*", Match.anyValue());
+    }
+
+    @Test
+    public void guardrailsFailSingleTaskServicesInProd() {
+        App app = app(Map.of(
+                "profile", "prod",
+                "network.privateNetworking", true,
+                "ecr.mirrorPublicImages", true,
+                "productsService.scaling.minTasks", 1));
+
+        Annotations.fromStack(stack(app, "ProductsService")).hasError("*", Match.stringLikeRegexp("scales down to 1 task"));
+    }
+
+    @Test
+    public void guardrailsFailProvisionedTablesWithoutAutoScaling() {
+        App app = new App();
+        Stack stack = new Stack(app, "Tables");
+        new Table(stack, "Unscaled", TableProps.builder()
+                .partitionKey(Attribute.builder().name("id").type(AttributeType.STRING).build())
+                .billingMode(BillingMode.PROVISIONED)
+                .build());
+        Aspects.of(app).add(new PerformanceGuardrails(Profile.DEV, new GuardrailSettings(2, 60)));
+
+        Annotations.fromStack(stack).hasError("*", Match.stringLikeRegexp("Provisioned table without"));
+    }
+
+    @Test
+    public void imageSettingsRejectTheTagsTheGuardrailRejects() {
+        assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "productsService.xray.image", "public.ecr.aws/xray/aws-xray-daemon:stable-latest")));
+        assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "loadTest.enabled", true,
+                "loadTest.image", "grafana/k6:latest-with-browser")));
+        assertThrows(IllegalArgumentException.class, () -> app(Map.of(
+                "productsService.imageTag", "latest-release")));
+    }
+
+    @Test
+    public void guardrailsFailImagesTaggedLatestIncludingMirroredOnes() {
+        App app = new App();
+        Stack stack = new Stack(app, "Images");
+        FargateTaskDefinition taskDefinition = new FargateTaskDefinition(stack, "TaskDefinition");
+        taskDefinition.addContainer("mirrored", ContainerDefinitionOptions.builder()
+                .image(ContainerImage.fromRegistry(stack.getAccount() + ".dkr.ecr.eu-north-1." + stack.getUrlSuffix()
+                        + "/ecr-public/aws-observability/aws-for-fluent-bit:init-latest"))
+                .memoryLimitMiB(64)
+                .build());
+        Aspects.of(app).add(new PerformanceGuardrails(Profile.DEV, new GuardrailSettings(2, 60)));
+
+        Annotations.fromStack(stack).hasError("*", Match.stringLikeRegexp("aws-for-fluent-bit:init-latest is not pinned"));
+    }
+}